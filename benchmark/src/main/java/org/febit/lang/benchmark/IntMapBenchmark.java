@@ -0,0 +1,110 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.lang.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.febit.lang.IntMap;
+import org.febit.lang.LongMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookups of IntMap and LongMap on patterned keys, java.util.HashMap as baseline.
+ *
+ * <pre>
+ *   sequential: 0, 1, 2 ...
+ *   strided: multiples of 4096, as aligned ids or segment heads of IP
+ *   random: uniform
+ * </pre>
+ *
+ * Half of lookups miss.
+ *
+ * @author zqq90
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntMapBenchmark {
+
+    private static final int QUERY_COUNT = 1 << 16;
+
+    @Param({"sequential", "strided", "random"})
+    public String pattern;
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    private IntMap<Object> intMap;
+    private LongMap<Object> longMap;
+    private Map<Integer, Object> hashMap;
+    private int[] intQueries;
+    private long[] longQueries;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(22);
+        final int[] keys = new int[size * 2];
+        for (int i = 0; i < keys.length; i++) {
+            switch (pattern) {
+                case "sequential":
+                    keys[i] = i;
+                    break;
+                case "strided":
+                    keys[i] = i << 12;
+                    break;
+                case "random":
+                    keys[i] = random.nextInt();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown pattern: " + pattern);
+            }
+        }
+        this.intMap = new IntMap<>();
+        this.longMap = new LongMap<>();
+        this.hashMap = new HashMap<>();
+        final Object value = new Object();
+        // the first half is present
+        for (int i = 0; i < size; i++) {
+            intMap.put(keys[i], value);
+            // long keys are shifted into high bits, as packed keys of IpSeeker
+            longMap.put(((long) keys[i]) << 32, value);
+            hashMap.put(keys[i], value);
+        }
+        this.intQueries = new int[QUERY_COUNT];
+        this.longQueries = new long[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            intQueries[i] = keys[random.nextInt(keys.length)];
+            longQueries[i] = ((long) intQueries[i]) << 32;
+        }
+    }
+
+    @Benchmark
+    public Object intMapGet() {
+        return intMap.get(intQueries[cursor++ & (QUERY_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public Object longMapGet() {
+        return longMap.get(longQueries[cursor++ & (QUERY_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public Object hashMapGet() {
+        return hashMap.get(intQueries[cursor++ & (QUERY_COUNT - 1)]);
+    }
+}
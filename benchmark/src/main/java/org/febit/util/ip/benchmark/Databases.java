@@ -0,0 +1,213 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.ip.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import org.febit.util.ip.IpSet;
+import org.febit.util.ip.IpUtil;
+import org.febit.util.ip.transfer.Transfer;
+import org.febit.util.ip.transfer.TransferInput;
+import org.febit.util.ip.transfer.TransferInputImpl;
+
+/**
+ * Synthetic databases and access patterns for benchmarks.
+ *
+ * @author zqq90
+ */
+public class Databases {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Count of ranges, close to common commercial databases.
+     */
+    public static final int RANGE_COUNT = 400000;
+    public static final int QUERY_COUNT = 1 << 16;
+    public static final int HOT_SET_SIZE = 64;
+
+    /**
+     * Random ends of ranges, ascending, the last is {@link IpUtil#IP_MAX}.
+     *
+     * @param seed
+     * @param count
+     * @return
+     */
+    public static long[] createEnds(long seed, int count) {
+        final Random random = new Random(seed);
+        final long[] ends = new long[count];
+        final long step = (IpUtil.IP_MAX / count) << 1;
+        long end = -1;
+        for (int i = 0; i < count - 1; i++) {
+            end = Math.min(IpUtil.IP_MAX - (count - i), end + 1 + (long) (random.nextDouble() * step));
+            ends[i] = end;
+        }
+        ends[count - 1] = IpUtil.IP_MAX;
+        return ends;
+    }
+
+    /**
+     * Create a febit database by {@link Transfer}.
+     *
+     * @param seed
+     * @param count
+     * @param prefixIndex
+     * @return
+     * @throws IOException
+     */
+    public static Path createFebitDatabase(long seed, int count, boolean prefixIndex) throws IOException {
+        final long[] ends = createEnds(seed, count);
+        final File file = File.createTempFile("febit-bench-", ".dat");
+        file.deleteOnExit();
+        final Transfer transfer = new Transfer(prefixIndex);
+        transfer.read(new Iterator<TransferInput>() {
+
+            int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < ends.length;
+            }
+
+            @Override
+            public TransferInput next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final int i = index++;
+                final long from = i == 0 ? 0 : ends[i - 1] + 1;
+                return new TransferInputImpl(from, ends[i],
+                        "C" + (i % 240), "I" + (i % 40), "P" + (i % 500), "T" + (i % 5000));
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        });
+        transfer.emit(file.getPath());
+        return file.toPath();
+    }
+
+    /**
+     * Create a 17mon database.
+     *
+     * @param seed
+     * @param count
+     * @return
+     */
+    public static byte[] createMon17Database(long seed, int count) {
+        final long[] ends = createEnds(seed, count);
+        final int recordStart = 1024 + 4;
+        final int textStart = recordStart + (count << 3);
+
+        final ByteArrayOutputStream text = new ByteArrayOutputStream();
+        final ByteBuffer buf = ByteBuffer.allocate(textStart);
+        buf.order(ByteOrder.BIG_ENDIAN).putInt(textStart + 1024);
+
+        // fast index
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        int record = 0;
+        for (int i = 0; i < 256; i++) {
+            while (ends[record] < ((long) i << 24)) {
+                record++;
+            }
+            buf.putInt(record);
+        }
+
+        final Map<String, Integer> textOffsets = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            final String str = "C" + (i % 240) + "\tP" + (i % 500) + "\tT" + (i % 5000) + '\t';
+            final byte[] bytes = str.getBytes(UTF_8);
+            Integer offset = textOffsets.get(str);
+            if (offset == null) {
+                offset = text.size();
+                text.write(bytes, 0, bytes.length);
+                textOffsets.put(str, offset);
+            }
+            final int off = offset;
+            buf.order(ByteOrder.BIG_ENDIAN).putInt((int) ends[i]);
+            buf.put((byte) off).put((byte) (off >>> 8)).put((byte) (off >>> 16));
+            buf.put((byte) bytes.length);
+        }
+
+        final byte[] textBytes = text.toByteArray();
+        final byte[] result = new byte[textStart + textBytes.length];
+        System.arraycopy(buf.array(), 0, result, 0, textStart);
+        // texts start at (offsetLimit - 1024)
+        System.arraycopy(textBytes, 0, result, textStart, textBytes.length);
+        return result;
+    }
+
+    /**
+     * Random CIDRs, from /8 to /28.
+     *
+     * @param seed
+     * @param count
+     * @return
+     */
+    public static IpSet createIpSet(long seed, int count) {
+        final Random random = new Random(seed);
+        final IpSet.Builder builder = IpSet.builder();
+        for (int i = 0; i < count; i++) {
+            final long head = random.nextLong() & IpUtil.IP_MAX;
+            final int mark = 8 + random.nextInt(21);
+            builder.add(IpUtil.getSegmentStart(head, mark), IpUtil.getSegmentEnd(head, mark));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Queries in given pattern.
+     *
+     * @param pattern random, sequential or hot
+     * @param seed
+     * @return
+     */
+    public static int[] createQueries(String pattern, long seed) {
+        final Random random = new Random(seed);
+        final int[] ips = new int[QUERY_COUNT];
+        switch (pattern) {
+            case "random":
+                for (int i = 0; i < ips.length; i++) {
+                    ips[i] = random.nextInt();
+                }
+                break;
+            case "sequential":
+                final int start = random.nextInt();
+                for (int i = 0; i < ips.length; i++) {
+                    ips[i] = start + (i << 4);
+                }
+                break;
+            case "hot":
+                final int[] hot = new int[HOT_SET_SIZE];
+                for (int i = 0; i < hot.length; i++) {
+                    hot[i] = random.nextInt();
+                }
+                for (int i = 0; i < ips.length; i++) {
+                    ips[i] = hot[random.nextInt(hot.length)];
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown pattern: " + pattern);
+        }
+        return ips;
+    }
+
+    public static String[] toStrings(int[] ips) {
+        final String[] strings = new String[ips.length];
+        for (int i = 0; i < ips.length; i++) {
+            strings[i] = IpUtil.toString(ips[i]);
+        }
+        return strings;
+    }
+}
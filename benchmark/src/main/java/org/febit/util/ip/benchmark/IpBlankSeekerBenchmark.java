@@ -0,0 +1,69 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.ip.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.febit.util.ip.IpBlankSeeker;
+import org.febit.util.ip.IpSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author zqq90
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IpBlankSeekerBenchmark {
+
+    @Param({"random", "sequential", "hot"})
+    public String pattern;
+
+    @Param({"1000", "100000"})
+    public int cidrs;
+
+    private IpBlankSeeker seeker;
+    private IpSet set;
+    private IpSet indexedSet;
+    private int[] ips;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        this.set = Databases.createIpSet(42, cidrs);
+        this.indexedSet = set.withPrefixIndex(16);
+        this.seeker = set.toBlankSeeker();
+        this.ips = Databases.createQueries(pattern, 7);
+    }
+
+    private int nextIp() {
+        return ips[cursor++ & (Databases.QUERY_COUNT - 1)];
+    }
+
+    @Benchmark
+    public boolean isWhite() {
+        return seeker.isWhite(nextIp());
+    }
+
+    @Benchmark
+    public boolean setContains() {
+        return set.contains(nextIp());
+    }
+
+    @Benchmark
+    public boolean indexedSetContains() {
+        return indexedSet.contains(nextIp());
+    }
+}
@@ -0,0 +1,69 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.ip.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.febit.util.ip.IpSeeker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author zqq90
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IpSeekerBenchmark {
+
+    @Param({"random", "sequential", "hot"})
+    public String pattern;
+
+    @Param({"heap", "mapped", "indexed"})
+    public String storage;
+
+    private IpSeeker seeker;
+    private int[] ips;
+    private int cursor;
+
+    @Setup
+    public void setup() throws IOException {
+        final Path path = Databases.createFebitDatabase(42, Databases.RANGE_COUNT, "indexed".equals(storage));
+        this.seeker = "mapped".equals(storage)
+                ? IpSeeker.createMapped(path)
+                : IpSeeker.create(path);
+        this.ips = Databases.createQueries(pattern, 7);
+    }
+
+    private int nextIp() {
+        return ips[cursor++ & (Databases.QUERY_COUNT - 1)];
+    }
+
+    @Benchmark
+    public IpSeeker.Location locate() {
+        return seeker.locate(nextIp());
+    }
+
+    @Benchmark
+    public IpSeeker.Area locateArea() {
+        return seeker.locateArea(nextIp());
+    }
+
+    @Benchmark
+    public long locateKey() {
+        return seeker.locateKey(nextIp());
+    }
+}
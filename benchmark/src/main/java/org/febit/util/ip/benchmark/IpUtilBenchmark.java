@@ -0,0 +1,69 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.ip.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.febit.util.ip.IpUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author zqq90
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IpUtilBenchmark {
+
+    private int[] ips;
+    private String[] strings;
+    private char[] buffer;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        this.ips = Databases.createQueries("random", 7);
+        this.strings = Databases.toStrings(ips);
+        this.buffer = new char[IpUtil.IPV4_MAX_LENGTH];
+    }
+
+    private int nextIndex() {
+        return cursor++ & (Databases.QUERY_COUNT - 1);
+    }
+
+    @Benchmark
+    public long ipv4ToLong() {
+        return IpUtil.ipv4ToLong(strings[nextIndex()]);
+    }
+
+    @Benchmark
+    public int parseInt() {
+        return IpUtil.parseInt(strings[nextIndex()]);
+    }
+
+    @Benchmark
+    public long parseIpv4() {
+        return IpUtil.parseIpv4(strings[nextIndex()]);
+    }
+
+    @Benchmark
+    public String toIpString() {
+        return IpUtil.toString(ips[nextIndex()]);
+    }
+
+    @Benchmark
+    public int writeTo() {
+        return IpUtil.writeTo(buffer, 0, ips[nextIndex()]);
+    }
+}
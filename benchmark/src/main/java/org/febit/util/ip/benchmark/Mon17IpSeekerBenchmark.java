@@ -0,0 +1,61 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.ip.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.febit.util.ip.Mon17IpSeeker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author zqq90
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Mon17IpSeekerBenchmark {
+
+    @Param({"random", "sequential", "hot"})
+    public String pattern;
+
+    @Param({"heap", "mapped"})
+    public String storage;
+
+    private Mon17IpSeeker seeker;
+    private int[] ips;
+    private int cursor;
+
+    @Setup
+    public void setup() throws IOException {
+        final byte[] database = Databases.createMon17Database(42, Databases.RANGE_COUNT);
+        if ("mapped".equals(storage)) {
+            final File file = File.createTempFile("febit-bench-17mon-", ".dat");
+            file.deleteOnExit();
+            Files.write(file.toPath(), database);
+            this.seeker = Mon17IpSeeker.createMapped(file.toPath());
+        } else {
+            this.seeker = Mon17IpSeeker.create(database);
+        }
+        this.ips = Databases.createQueries(pattern, 7);
+    }
+
+    @Benchmark
+    public Mon17IpSeeker.Location locate() {
+        return seeker.locate(ips[cursor++ & (Databases.QUERY_COUNT - 1)]);
+    }
+}
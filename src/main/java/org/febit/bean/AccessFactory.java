@@ -4,8 +4,11 @@ package org.febit.bean;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.Map;
 import org.febit.lang.Defaults;
+import org.febit.lang.Function1;
+import org.febit.lang.TypeCache;
 import org.febit.util.ClassUtil;
 import org.febit.util.CollectionUtil;
 
@@ -15,6 +18,40 @@ import org.febit.util.CollectionUtil;
  */
 public class AccessFactory {
 
+    private static final TypeCache<Map<String, Setter>> SETTERS = TypeCache.create(new Function1<Map<String, Setter>, Class>() {
+        @Override
+        public Map<String, Setter> call(Class cls) {
+            return Collections.unmodifiableMap(resolveSetters(cls));
+        }
+    });
+
+    private static final TypeCache<Map<String, Accessor>> ACCESSORS = TypeCache.create(new Function1<Map<String, Accessor>, Class>() {
+        @Override
+        public Map<String, Accessor> call(Class cls) {
+            return Collections.unmodifiableMap(resolveAccessors(cls));
+        }
+    });
+
+    /**
+     * Get setters of given class, resolved once per class.
+     *
+     * @param cls
+     * @return unmodifiable map
+     */
+    public static Map<String, Setter> getSetters(Class cls) {
+        return SETTERS.get(cls);
+    }
+
+    /**
+     * Get accessors of given class, resolved once per class.
+     *
+     * @param cls
+     * @return unmodifiable map
+     */
+    public static Map<String, Accessor> getAccessors(Class cls) {
+        return ACCESSORS.get(cls);
+    }
+
     public static Accessor createAccessor(final FieldInfo fieldInfo) {
         return new Accessor(createGetterIfAccessable(fieldInfo), createSetterIfAccessable(fieldInfo));
     }
@@ -3,7 +3,6 @@ package org.febit.bean;
 
 import java.util.Map;
 import org.febit.convert.Convert;
-import org.febit.lang.ClassMap;
 import org.febit.util.StringUtil;
 
 /**
@@ -12,8 +11,6 @@ import org.febit.util.StringUtil;
  */
 public class BeanUtil {
 
-    private static final ClassMap<Map<String, Accessor>> CACHE = new ClassMap<>();
-
     public static Object get(final Object bean, final String name) throws BeanUtilException {
         Getter getter;
         if ((getter = getAccessor(bean.getClass(), name).getter) != null) {
@@ -56,13 +53,8 @@ public class BeanUtil {
 
     private static Accessor getAccessor(final Class cls, final String name) throws BeanUtilException {
 
-        Map<String, Accessor> descs;
-        if ((descs = CACHE.unsafeGet(cls)) == null) {
-            descs = CACHE.putIfAbsent(cls, AccessFactory.resolveAccessors(cls));
-        }
-
         Accessor fieldDescriptor;
-        if ((fieldDescriptor = descs.get(name)) != null) {
+        if ((fieldDescriptor = AccessFactory.getAccessors(cls).get(name)) != null) {
             return fieldDescriptor;
         }
         throw new BeanUtilException(StringUtil.format("Unable to get field: {}#{}", cls.getName(), name));
@@ -6,6 +6,7 @@ import java.awt.Font;
 import java.util.TimeZone;
 import org.febit.convert.impl.*;
 import org.febit.lang.IdentityMap;
+import org.febit.lang.TypeCache;
 import org.febit.util.ClassUtil;
 import org.febit.util.StringUtil;
 
@@ -15,8 +16,20 @@ import org.febit.util.StringUtil;
  */
 public class Convert {
 
+    /**
+     * Registered converters, looked up through {@link #CONVERTER_CACHE}, guarded by itself.
+     */
     protected static final IdentityMap<TypeConverter> CONVERTERS = new IdentityMap<>();
 
+    protected static final TypeCache<TypeConverter> CONVERTER_CACHE = new TypeCache<TypeConverter>() {
+        @Override
+        protected TypeConverter resolve(Class type) {
+            synchronized (CONVERTERS) {
+                return CONVERTERS.get(type);
+            }
+        }
+    };
+
     static {
         register(String.class, new StringConverter());
         register(String[].class, new StringArrayConverter());
@@ -48,12 +61,19 @@ public class Convert {
     }
 
     public static void register(Class type, TypeConverter convert) {
-        CONVERTERS.put(type, convert);
+        synchronized (CONVERTERS) {
+            CONVERTERS.put(type, convert);
+        }
+        CONVERTER_CACHE.remove(type);
+    }
+
+    public static TypeConverter getConverter(Class type) {
+        return CONVERTER_CACHE.get(type);
     }
 
     public static Object convert(String string, Class type) {
         final TypeConverter convert;
-        if ((convert = CONVERTERS.get(type)) != null) {
+        if ((convert = CONVERTER_CACHE.get(type)) != null) {
             return convert.convert(string, type);
         }
         return string;
@@ -61,7 +81,7 @@ public class Convert {
 
     public static Object convert(String string, Class type, TypeConverter defaultConverter) {
         TypeConverter convert;
-        if ((convert = CONVERTERS.get(type)) == null) {
+        if ((convert = CONVERTER_CACHE.get(type)) == null) {
             convert = defaultConverter;
         }
         return convert.convert(string, type);
@@ -5,7 +5,7 @@ import java.util.List;
 import java.util.Map;
 import jodd.util.ReflectUtil;
 import org.febit.form.util.BaseFormUtil;
-import org.febit.lang.ConcurrentIdentityMap;
+import org.febit.lang.TypeCache;
 import org.febit.util.ClassUtil;
 import org.febit.vtor.Vtor;
 
@@ -17,7 +17,12 @@ import org.febit.vtor.Vtor;
  */
 public abstract class BaseFormImpl<E, I> implements AddForm<E>, ModifyForm<E, I> {
 
-    private static final ConcurrentIdentityMap<Class> CACHE = new ConcurrentIdentityMap<>(128);
+    private static final TypeCache<Class> MODEL_TYPES = new TypeCache<Class>() {
+        @Override
+        protected Class resolve(Class type) {
+            return ReflectUtil.getRawType(BaseFormImpl.class.getTypeParameters()[0], type);
+        }
+    };
     protected List<Vtor> __vtors;
 
     @Override
@@ -63,12 +68,6 @@ public abstract class BaseFormImpl<E, I> implements AddForm<E>, ModifyForm<E, I>
     }
 
     public Class<E> modelType() {
-        Class<E> type = CACHE.unsafeGet(this.getClass());
-        if (type != null) {
-            return type;
-        }
-        type = (Class<E>) ReflectUtil.getRawType(BaseFormImpl.class.getTypeParameters()[0], this.getClass());
-        CACHE.putIfAbsent(this.getClass(), type);
-        return type;
+        return (Class<E>) MODEL_TYPES.get(this.getClass());
     }
 }
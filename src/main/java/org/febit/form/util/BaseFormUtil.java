@@ -20,7 +20,7 @@ import org.febit.form.BaseFormImpl;
 import org.febit.form.meta.AM;
 import org.febit.form.meta.Add;
 import org.febit.form.meta.Modify;
-import org.febit.lang.ConcurrentIdentityMap;
+import org.febit.lang.TypeCache;
 import org.febit.util.ArraysUtil;
 import org.febit.util.ClassUtil;
 import org.febit.util.CollectionUtil;
@@ -31,7 +31,12 @@ import org.febit.util.CollectionUtil;
  */
 public class BaseFormUtil {
 
-    private static final ConcurrentIdentityMap<FormEntry> CACHE = new ConcurrentIdentityMap<>(128);
+    private static final TypeCache<FormEntry> CACHE = new TypeCache<FormEntry>() {
+        @Override
+        protected FormEntry resolve(Class type) {
+            return resolveFormEntry(type);
+        }
+    };
     private static final Logger LOG = LoggerFactory.getLogger(BaseFormUtil.class);
 
     protected static class FormEntry {
@@ -95,12 +100,7 @@ public class BaseFormUtil {
     }
 
     protected static FormEntry getFormEntry(final Class providerType) {
-        FormEntry formEntry = CACHE.unsafeGet(providerType);
-        if (formEntry != null) {
-            return formEntry;
-        } else {
-            return resolveFormEntry(providerType);
-        }
+        return CACHE.get(providerType);
     }
 
     protected static FormEntry resolveFormEntry(final Class providerType) {
@@ -171,7 +171,7 @@ public class BaseFormUtil {
             List<Peer> list = entry.getValue();
             modifyProfiles.put(integer, list.toArray(new Peer[list.size()]));
         }
-        return CACHE.putIfAbsent(providerType, new FormEntry(addProfiles, modifyProfiles));
+        return new FormEntry(addProfiles, modifyProfiles);
     }
 
     protected static class FormItem {
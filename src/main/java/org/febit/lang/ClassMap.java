@@ -1,15 +1,23 @@
 // Copyright (c) 2013-present, febit.org. All Rights Reserved.
 package org.febit.lang;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Map of classes for read-mostly caches, reads never lock.
+ *
+ * @see ConcurrentIdentityMap
+ * @author zqq90
+ */
 public final class ClassMap<V> {
 
     private static final int MAXIMUM_CAPACITY = 1 << 29;
 
-    private Entry<V>[] table;
+    private volatile AtomicReferenceArray<Entry<V>> table;
+    private volatile int size;
+    // guarded by this
     private int threshold;
-    private int size;
 
-    @SuppressWarnings("unchecked")
     public ClassMap(int initialCapacity) {
         int initlen;
         if (initialCapacity > MAXIMUM_CAPACITY) {
@@ -20,7 +28,7 @@ public final class ClassMap<V> {
                 initlen <<= 1;
             }
         }
-        this.table = new Entry[initlen];
+        this.table = new AtomicReferenceArray<>(initlen);
         this.threshold = (int) (initlen * 0.75f);
     }
 
@@ -32,10 +40,19 @@ public final class ClassMap<V> {
         return size;
     }
 
+    /**
+     * Same as {@link #get(Class)}, reads never lock.
+     *
+     * @param key
+     * @return
+     */
     public V unsafeGet(final Class key) {
-        Entry<V> e;
-        final Entry<V>[] tab;
-        e = (tab = table)[key.hashCode() & (tab.length - 1)];
+        return get(key);
+    }
+
+    public V get(final Class key) {
+        final AtomicReferenceArray<Entry<V>> tab = this.table;
+        Entry<V> e = tab.get(key.hashCode() & (tab.length() - 1));
         while (e != null) {
             if (key == e.key) {
                 return e.value;
@@ -45,75 +62,50 @@ public final class ClassMap<V> {
         return null;
     }
 
-    public V get(Class key) {
-        synchronized (this) {
-            return unsafeGet(key);
-        }
-    }
-
     @SuppressWarnings("unchecked")
     private void resize() {
-        synchronized (this) {
-            if (size < threshold) {
-                return;
-            }
-            final Entry<V>[] oldTable = table;
-            final int oldCapacity = oldTable.length;
+        final AtomicReferenceArray<Entry<V>> oldTable = this.table;
+        final int oldCapacity = oldTable.length();
 
-            final int newCapacity = oldCapacity << 1;
-            if (newCapacity > MAXIMUM_CAPACITY) {
-                if (threshold == MAXIMUM_CAPACITY - 1) {
-                    throw new IllegalStateException("Capacity exhausted.");
-                }
-                threshold = MAXIMUM_CAPACITY - 1;
-                return;
+        final int newCapacity = oldCapacity << 1;
+        if (newCapacity > MAXIMUM_CAPACITY) {
+            if (threshold == MAXIMUM_CAPACITY - 1) {
+                throw new IllegalStateException("Capacity exhausted.");
             }
-            final int newMark = newCapacity - 1;
-            final Entry<V>[] newTable = new Entry[newCapacity];
-
-            for (int i = oldCapacity; i-- > 0;) {
-                int index;
-                for (Entry<V> old = oldTable[i], e; old != null;) {
-                    e = old;
-                    old = old.next;
-
-                    index = e.id & newMark;
-                    e.next = newTable[index];
-                    newTable[index] = e;
-                }
+            threshold = MAXIMUM_CAPACITY - 1;
+            return;
+        }
+        final int newMark = newCapacity - 1;
+        final Entry<V>[] newTable = new Entry[newCapacity];
+        for (int i = oldCapacity; i-- > 0;) {
+            // entries are immutable, copy them
+            for (Entry<V> e = oldTable.get(i); e != null; e = e.next) {
+                final int index = e.id & newMark;
+                newTable[index] = new Entry<>(e.id, e.key, e.value, newTable[index]);
             }
-
-            this.threshold = (int) (newCapacity * 0.75f);
-            //Note: must at Last
-            this.table = newTable;
         }
+        this.threshold = (int) (newCapacity * 0.75f);
+        //Note: must at Last
+        this.table = new AtomicReferenceArray<>(newTable);
     }
 
-    @SuppressWarnings("unchecked")
-    public V putIfAbsent(Class key, V value) {
-        synchronized (this) {
-            final int id;
-            int index;
-
-            Entry<V>[] tab;
-            Entry<V> e = (tab = table)[index = (id = key.hashCode()) & (tab.length - 1)];
-            for (; e != null; e = e.next) {
-                if (key == e.key) {
-                    return e.value;
-                }
-            }
-
-            if (size >= threshold) {
-                resize();
-                tab = table;
-                index = id & (tab.length - 1);
+    public synchronized V putIfAbsent(Class key, V value) {
+        final int id = key.hashCode();
+        AtomicReferenceArray<Entry<V>> tab = this.table;
+        for (Entry<V> e = tab.get(id & (tab.length() - 1)); e != null; e = e.next) {
+            if (key == e.key) {
+                return e.value;
             }
-
-            // creates the new entry.
-            tab[index] = new Entry(id, key, value, tab[index]);
-            size++;
-            return value;
         }
+        if (size >= threshold) {
+            resize();
+            tab = this.table;
+        }
+        final int index = id & (tab.length() - 1);
+        // publish by release store, entry is immutable
+        tab.lazySet(index, new Entry<>(id, key, value, tab.get(index)));
+        size++;
+        return value;
     }
 
     private static final class Entry<V> {
@@ -121,7 +113,7 @@ public final class ClassMap<V> {
         final int id;
         final Class key;
         final V value;
-        Entry<V> next;
+        final Entry<V> next;
 
         Entry(int id, Class key, V value, Entry<V> next) {
             this.value = value;
@@ -1,41 +1,166 @@
 // Copyright (c) 2013-present, febit.org. All Rights Reserved.
 package org.febit.lang;
 
-public final class ConcurrentIdentityMap<V> extends AbstractIdentityMap<V> {
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Identity map for read-mostly caches, reads never lock.
+ *
+ * Entries are immutable, a write replaces the chain in its slot, which is published by release store. The table is
+ * replaced as a whole when resizing, and published by volatile write. Writes are serialized by the monitor of map.
+ *
+ * @author zqq90
+ */
+public final class ConcurrentIdentityMap<V> {
+
+    private static final int MAXIMUM_CAPACITY = 1 << 29;
+
+    private volatile AtomicReferenceArray<Entry<V>> table;
+    private volatile int size;
+    // guarded by this
+    private int threshold;
 
     public ConcurrentIdentityMap() {
-        super();
+        this(64);
     }
 
     public ConcurrentIdentityMap(int initialCapacity) {
-        super(initialCapacity);
+        int initlen;
+        if (initialCapacity > MAXIMUM_CAPACITY) {
+            initlen = MAXIMUM_CAPACITY;
+        } else {
+            initlen = 16;
+            while (initlen < initialCapacity) {
+                initlen <<= 1;
+            }
+        }
+        this.table = new AtomicReferenceArray<>(initlen);
+        this.threshold = (int) (initlen * 0.75f);
+    }
+
+    public int size() {
+        return size;
     }
 
+    /**
+     * Same as {@link #get(Object)}, reads never lock.
+     *
+     * @param key
+     * @return
+     */
     public V unsafeGet(final Object key) {
-        return _get(key);
+        return get(key);
+    }
+
+    public V get(final Object key) {
+        final AtomicReferenceArray<Entry<V>> tab = this.table;
+        Entry<V> e = tab.get(key.hashCode() & (tab.length() - 1));
+        while (e != null) {
+            if (key == e.key) {
+                return e.value;
+            }
+            e = e.next;
+        }
+        return null;
+    }
+
+    public synchronized V putIfAbsent(Object key, V value) {
+        final int id = key.hashCode();
+        final AtomicReferenceArray<Entry<V>> tab = this.table;
+        for (Entry<V> e = tab.get(id & (tab.length() - 1)); e != null; e = e.next) {
+            if (key == e.key) {
+                return e.value;
+            }
+        }
+        insert(id, key, value);
+        return value;
+    }
+
+    public synchronized void put(Object key, V value) {
+        final int id = key.hashCode();
+        final AtomicReferenceArray<Entry<V>> tab = this.table;
+        final int index = id & (tab.length() - 1);
+        final Entry<V> head = tab.get(index);
+        for (Entry<V> e = head; e != null; e = e.next) {
+            if (key == e.key) {
+                tab.lazySet(index, rebuild(head, e, new Entry<>(id, key, value, e.next)));
+                return;
+            }
+        }
+        insert(id, key, value);
     }
 
-    public V get(Object key) {
-        synchronized (this) {
-            return _get(key);
+    public synchronized void remove(Object key) {
+        final AtomicReferenceArray<Entry<V>> tab = this.table;
+        final int index = key.hashCode() & (tab.length() - 1);
+        final Entry<V> head = tab.get(index);
+        for (Entry<V> e = head; e != null; e = e.next) {
+            if (key == e.key) {
+                tab.lazySet(index, rebuild(head, e, e.next));
+                size--;
+                return;
+            }
         }
     }
 
-    public V putIfAbsent(Object key, V value) {
-        synchronized (this) {
-            return _putIfAbsent(key, value);
+    /**
+     * Copy entries before the target, then link to the replacement, since entries are immutable.
+     */
+    private static <V> Entry<V> rebuild(Entry<V> head, Entry<V> target, Entry<V> replacement) {
+        if (head == target) {
+            return replacement;
         }
+        return new Entry<>(head.id, head.key, head.value, rebuild(head.next, target, replacement));
     }
 
-    public void put(Object key, V value) {
-        synchronized (this) {
-            _put(key, value);
+    private void insert(final int id, final Object key, final V value) {
+        if (size >= threshold) {
+            resize();
         }
+        final AtomicReferenceArray<Entry<V>> tab = this.table;
+        final int index = id & (tab.length() - 1);
+        tab.lazySet(index, new Entry<>(id, key, value, tab.get(index)));
+        size++;
     }
 
-    public void remove(Object key) {
-        synchronized (this) {
-            _remove(key);
+    @SuppressWarnings("unchecked")
+    private void resize() {
+        final AtomicReferenceArray<Entry<V>> oldTable = this.table;
+        final int oldCapacity = oldTable.length();
+
+        final int newCapacity = oldCapacity << 1;
+        if (newCapacity > MAXIMUM_CAPACITY) {
+            if (threshold == MAXIMUM_CAPACITY - 1) {
+                throw new IllegalStateException("Capacity exhausted.");
+            }
+            threshold = MAXIMUM_CAPACITY - 1;
+            return;
+        }
+        final int newMark = newCapacity - 1;
+        final Entry<V>[] newTable = new Entry[newCapacity];
+        for (int i = oldCapacity; i-- > 0;) {
+            for (Entry<V> e = oldTable.get(i); e != null; e = e.next) {
+                final int index = e.id & newMark;
+                newTable[index] = new Entry<>(e.id, e.key, e.value, newTable[index]);
+            }
+        }
+        this.threshold = (int) (newCapacity * 0.75f);
+        //Note: must at Last
+        this.table = new AtomicReferenceArray<>(newTable);
+    }
+
+    private static final class Entry<V> {
+
+        final int id;
+        final Object key;
+        final V value;
+        final Entry<V> next;
+
+        Entry(int id, Object key, V value, Entry<V> next) {
+            this.value = value;
+            this.id = id;
+            this.key = key;
+            this.next = next;
         }
     }
 }
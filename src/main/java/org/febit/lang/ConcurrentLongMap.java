@@ -0,0 +1,136 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.lang;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Map of long keys for read-mostly caches, reads never lock and never box.
+ *
+ * @see ConcurrentIdentityMap
+ * @author zqq90
+ */
+public final class ConcurrentLongMap<V> {
+
+    private static final int MAXIMUM_CAPACITY = 1 << 29;
+
+    private volatile AtomicReferenceArray<Entry<V>> table;
+    private volatile int size;
+    // guarded by this
+    private int threshold;
+
+    public ConcurrentLongMap() {
+        this(64);
+    }
+
+    public ConcurrentLongMap(int initialCapacity) {
+        int initlen;
+        if (initialCapacity > MAXIMUM_CAPACITY) {
+            initlen = MAXIMUM_CAPACITY;
+        } else {
+            initlen = 16;
+            while (initlen < initialCapacity) {
+                initlen <<= 1;
+            }
+        }
+        this.table = new AtomicReferenceArray<>(initlen);
+        this.threshold = (int) (initlen * 0.75f);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public V get(final long key) {
+        final AtomicReferenceArray<Entry<V>> tab = this.table;
+        Entry<V> e = tab.get((int) LongMap.hash(key) & (tab.length() - 1));
+        while (e != null) {
+            if (key == e.key) {
+                return e.value;
+            }
+            e = e.next;
+        }
+        return null;
+    }
+
+    public synchronized V putIfAbsent(final long key, final V value) {
+        final int id = (int) LongMap.hash(key);
+        AtomicReferenceArray<Entry<V>> tab = this.table;
+        for (Entry<V> e = tab.get(id & (tab.length() - 1)); e != null; e = e.next) {
+            if (key == e.key) {
+                return e.value;
+            }
+        }
+        if (size >= threshold) {
+            resize();
+            tab = this.table;
+        }
+        final int index = id & (tab.length() - 1);
+        // publish by release store, entry is immutable
+        tab.lazySet(index, new Entry<>(id, key, value, tab.get(index)));
+        size++;
+        return value;
+    }
+
+    /**
+     * Keys at the moment, in no particular order.
+     *
+     * @return
+     */
+    public long[] exportKeys() {
+        final AtomicReferenceArray<Entry<V>> tab = this.table;
+        long[] keys = new long[this.size];
+        int count = 0;
+        for (int i = 0, len = tab.length(); i < len; i++) {
+            for (Entry<V> e = tab.get(i); e != null; e = e.next) {
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, count + 16);
+                }
+                keys[count++] = e.key;
+            }
+        }
+        return count == keys.length ? keys : Arrays.copyOf(keys, count);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize() {
+        final AtomicReferenceArray<Entry<V>> oldTable = this.table;
+        final int oldCapacity = oldTable.length();
+
+        final int newCapacity = oldCapacity << 1;
+        if (newCapacity > MAXIMUM_CAPACITY) {
+            if (threshold == MAXIMUM_CAPACITY - 1) {
+                throw new IllegalStateException("Capacity exhausted.");
+            }
+            threshold = MAXIMUM_CAPACITY - 1;
+            return;
+        }
+        final int newMark = newCapacity - 1;
+        final Entry<V>[] newTable = new Entry[newCapacity];
+        for (int i = oldCapacity; i-- > 0;) {
+            // entries are immutable, copy them
+            for (Entry<V> e = oldTable.get(i); e != null; e = e.next) {
+                final int index = e.id & newMark;
+                newTable[index] = new Entry<>(e.id, e.key, e.value, newTable[index]);
+            }
+        }
+        this.threshold = (int) (newCapacity * 0.75f);
+        //Note: must at Last
+        this.table = new AtomicReferenceArray<>(newTable);
+    }
+
+    private static final class Entry<V> {
+
+        final int id;
+        final long key;
+        final V value;
+        final Entry<V> next;
+
+        Entry(int id, long key, V value, Entry<V> next) {
+            this.value = value;
+            this.id = id;
+            this.key = key;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.lang;
+
+/**
+ * Open addressing map with int keys and int values, by linear probing.
+ *
+ * Keys and values are kept in parallel primitive arrays, nothing is boxed or allocated per mapping. Absent keys
+ * are read as 0.
+ *
+ * @see IntKeyTable
+ * @author zqq90
+ */
+public final class IntIntMap extends IntKeyTable {
+
+    private int[] values;
+    private int zeroValue;
+
+    public IntIntMap(int initialCapacity) {
+        super(initialCapacity);
+        this.values = new int[this.keys.length];
+    }
+
+    public IntIntMap() {
+        this(64);
+    }
+
+    /**
+     * Get value of the given key.
+     *
+     * @param key
+     * @return 0 if absent
+     */
+    public int get(final int key) {
+        return get(key, 0);
+    }
+
+    public int get(final int key, final int defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        final int index = find(key);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    public void put(final int key, final int value) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        final int index = findForPut(key);
+        if (index >= 0) {
+            values[index] = value;
+            return;
+        }
+        // values could be replaced by resizing
+        final int slot = insertKey(-index - 1, key);
+        values[slot] = value;
+    }
+
+    /**
+     * Put if absent.
+     *
+     * @param key
+     * @param value
+     * @return current value
+     */
+    public int putIfAbsent(final int key, final int value) {
+        if (key == 0) {
+            if (hasZeroKey) {
+                return zeroValue;
+            }
+            hasZeroKey = true;
+            zeroValue = value;
+            size++;
+            return value;
+        }
+        final int index = findForPut(key);
+        if (index >= 0) {
+            return values[index];
+        }
+        final int slot = insertKey(-index - 1, key);
+        values[slot] = value;
+        return value;
+    }
+
+    /**
+     * Add delta to value of the given key, absent value is treated as 0.
+     *
+     * @param key
+     * @param delta
+     * @return new value
+     */
+    public int addTo(final int key, final int delta) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            return zeroValue += delta;
+        }
+        final int index = findForPut(key);
+        if (index >= 0) {
+            return values[index] += delta;
+        }
+        final int slot = insertKey(-index - 1, key);
+        values[slot] = delta;
+        return delta;
+    }
+
+    /**
+     * Increase value of the given key by one.
+     *
+     * @param key
+     * @return new value
+     */
+    public int incrementAndGet(final int key) {
+        return addTo(key, 1);
+    }
+
+    /**
+     * Remove the given key.
+     *
+     * @param key
+     * @return removed value, 0 if absent
+     */
+    public int remove(final int key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return 0;
+            }
+            final int old = zeroValue;
+            hasZeroKey = false;
+            zeroValue = 0;
+            size--;
+            return old;
+        }
+        final int index = find(key);
+        if (index < 0) {
+            return 0;
+        }
+        final int old = values[index];
+        removeAt(index);
+        return old;
+    }
+
+    public void clear() {
+        clearKeys();
+        this.values = new int[this.values.length];
+        this.zeroValue = 0;
+    }
+
+    /**
+     * Export values.
+     *
+     * @see #exportKeys()
+     * @return values in the same order with keys exported
+     */
+    public int[] exportValues() {
+        final int[] result = new int[this.size];
+        int i = 0;
+        if (hasZeroKey) {
+            result[i++] = zeroValue;
+        }
+        final int[] myKeys = this.keys;
+        final int[] myValues = this.values;
+        for (int j = 0; j < myKeys.length; j++) {
+            if (myKeys[j] != 0) {
+                result[i++] = myValues[j];
+            }
+        }
+        return result;
+    }
+
+    @Override
+    void moveValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+    @Override
+    void clearValue(int index) {
+        values[index] = 0;
+    }
+
+    @Override
+    void rehashValues(final int[] newSlots, final int newCapacity) {
+        final int[] oldValues = this.values;
+        final int[] newValues = new int[newCapacity];
+        for (int i = 0; i < newSlots.length; i++) {
+            if (newSlots[i] >= 0) {
+                newValues[newSlots[i]] = oldValues[i];
+            }
+        }
+        this.values = newValues;
+    }
+}
@@ -0,0 +1,204 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.lang;
+
+/**
+ * Slots of int keys for open addressing maps by linear probing, shared by {@link IntIntMap} and {@link IntLongMap}.
+ *
+ * Values are kept by subclasses in an array parallel with keys. Key 0 marks a free slot, so the zero key is kept
+ * aside by subclasses, and counted in size.
+ *
+ * @see IntMap#hash(int)
+ * @author zqq90
+ */
+abstract class IntKeyTable {
+
+    private static final int MAXIMUM_CAPACITY = 1 << 29;
+
+    int[] keys;
+    int threshold;
+    int size;
+    boolean hasZeroKey;
+
+    IntKeyTable(int initialCapacity) {
+        int initlen;
+        if (initialCapacity > MAXIMUM_CAPACITY) {
+            initlen = MAXIMUM_CAPACITY;
+        } else {
+            initlen = 16;
+            while (initlen < initialCapacity) {
+                initlen <<= 1;
+            }
+        }
+        this.keys = new int[initlen];
+        this.threshold = (int) (initlen * 0.75f);
+    }
+
+    /**
+     * Move value of a slot, when shifting back a cluster.
+     */
+    abstract void moveValue(int from, int to);
+
+    abstract void clearValue(int index);
+
+    /**
+     * Replace values by an array of given capacity, value of old slot i goes to slot newSlots[i] unless it's -1.
+     */
+    abstract void rehashValues(int[] newSlots, int newCapacity);
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(final int key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        return find(key) >= 0;
+    }
+
+    static int index(final int key, final int mark) {
+        return IntMap.hash(key) & mark;
+    }
+
+    /**
+     * Find slot of the given non-zero key.
+     *
+     * @return slot index, or -1 if not found
+     */
+    final int find(final int key) {
+        final int[] myKeys = this.keys;
+        final int mark = myKeys.length - 1;
+        int index = index(key, mark);
+        int k;
+        while ((k = myKeys[index]) != 0) {
+            if (k == key) {
+                return index;
+            }
+            index = (index + 1) & mark;
+        }
+        return -1;
+    }
+
+    /**
+     * Find slot of the given non-zero key, or the free slot for it.
+     *
+     * @return slot index, or (-index - 1) of the free slot if not found
+     */
+    final int findForPut(final int key) {
+        final int[] myKeys = this.keys;
+        final int mark = myKeys.length - 1;
+        int index = index(key, mark);
+        int k;
+        while ((k = myKeys[index]) != 0) {
+            if (k == key) {
+                return index;
+            }
+            index = (index + 1) & mark;
+        }
+        return -index - 1;
+    }
+
+    /**
+     * Take the free slot for a new key, resize if needed.
+     *
+     * @param index free slot from {@link #findForPut(int)}
+     * @return slot of the key, value should be set by caller
+     */
+    final int insertKey(int index, final int key) {
+        if (size >= threshold) {
+            resize();
+            index = -findForPut(key) - 1;
+        }
+        keys[index] = key;
+        size++;
+        return index;
+    }
+
+    /**
+     * Free the slot of a key.
+     */
+    final void removeAt(int index) {
+        final int[] myKeys = this.keys;
+        final int mark = myKeys.length - 1;
+        // shift back following entries of the cluster, instead of leaving tombstones
+        for (int next = (index + 1) & mark;; next = (next + 1) & mark) {
+            final int k = myKeys[next];
+            if (k == 0) {
+                break;
+            }
+            final int home = index(k, mark);
+            // move if home of next is not in (index, next]
+            if (((next - home) & mark) >= ((next - index) & mark)) {
+                myKeys[index] = k;
+                moveValue(next, index);
+                index = next;
+            }
+        }
+        myKeys[index] = 0;
+        clearValue(index);
+        size--;
+    }
+
+    final void clearKeys() {
+        this.keys = new int[this.keys.length];
+        this.hasZeroKey = false;
+        this.size = 0;
+    }
+
+    /**
+     * Export keys, zero key first if present, then by slot.
+     *
+     * @return keys in the same order with values exported
+     */
+    public int[] exportKeys() {
+        final int[] result = new int[this.size];
+        int i = 0;
+        if (hasZeroKey) {
+            result[i++] = 0;
+        }
+        for (int key : this.keys) {
+            if (key != 0) {
+                result[i++] = key;
+            }
+        }
+        return result;
+    }
+
+    private void resize() {
+        if (size < threshold) {
+            return;
+        }
+        final int[] oldKeys = this.keys;
+        final int oldCapacity = oldKeys.length;
+
+        final int newCapacity = oldCapacity << 1;
+        if (newCapacity > MAXIMUM_CAPACITY) {
+            if (threshold == MAXIMUM_CAPACITY - 1) {
+                throw new IllegalStateException("Capacity exhausted.");
+            }
+            threshold = MAXIMUM_CAPACITY - 1;
+            return;
+        }
+        final int newMark = newCapacity - 1;
+        final int[] newKeys = new int[newCapacity];
+        final int[] newSlots = new int[oldCapacity];
+
+        for (int i = oldCapacity; i-- > 0;) {
+            final int key = oldKeys[i];
+            if (key == 0) {
+                newSlots[i] = -1;
+                continue;
+            }
+            int index = index(key, newMark);
+            while (newKeys[index] != 0) {
+                index = (index + 1) & newMark;
+            }
+            newKeys[index] = key;
+            newSlots[i] = index;
+        }
+        rehashValues(newSlots, newCapacity);
+
+        this.threshold = (int) (newCapacity * 0.75f);
+        this.keys = newKeys;
+    }
+}
@@ -5,6 +5,10 @@ import java.util.NoSuchElementException;
 import org.febit.lang.iter.BaseIter;
 
 /**
+ * Open addressing map with int keys, by linear probing.
+ *
+ * Keys and values are kept in parallel arrays, no entry is allocated per mapping. Slot with key 0 is free, key 0
+ * itself is stored aside.
  *
  * @author zqq90
  */
@@ -12,11 +16,14 @@ public final class IntMap<V> implements Iterable<IntMap.Entry<V>> {
 
     private static final int MAXIMUM_CAPACITY = 1 << 29;
 
-    private Entry<V>[] table;
+    private int[] keys;
+    private Object[] values;
     private int threshold;
     private int size;
 
-    @SuppressWarnings("unchecked")
+    private boolean hasZeroKey;
+    private Object zeroValue;
+
     public IntMap(int initialCapacity) {
         int initlen;
         if (initialCapacity > MAXIMUM_CAPACITY) {
@@ -27,7 +34,8 @@ public final class IntMap<V> implements Iterable<IntMap.Entry<V>> {
                 initlen <<= 1;
             }
         }
-        this.table = new Entry[initlen];
+        this.keys = new int[initlen];
+        this.values = new Object[initlen];
         this.threshold = (int) (initlen * 0.75f);
     }
 
@@ -39,77 +47,122 @@ public final class IntMap<V> implements Iterable<IntMap.Entry<V>> {
         return size;
     }
 
-    public V get(final int key) {
-        Entry<V> e;
-        final Entry<V>[] tab;
-        e = (tab = table)[key & (tab.length - 1)];
-        while (e != null) {
-            if (key == e.key) {
-                return e.value;
+    /**
+     * Spread bits of key by the murmur3 finalizer, so that patterned keys (sequential, strided or aligned) are not
+     * clustered in a few slots.
+     */
+    static int hash(int key) {
+        key ^= key >>> 16;
+        key *= 0x85ebca6b;
+        key ^= key >>> 13;
+        key *= 0xc2b2ae35;
+        key ^= key >>> 16;
+        return key;
+    }
+
+    private static int index(final int key, final int mark) {
+        return hash(key) & mark;
+    }
+
+    /**
+     * Find slot of the given non-zero key.
+     *
+     * @return slot index, or -1 if not found
+     */
+    private int find(final int key) {
+        final int[] myKeys = this.keys;
+        final int mark = myKeys.length - 1;
+        int index = index(key, mark);
+        int k;
+        while ((k = myKeys[index]) != 0) {
+            if (k == key) {
+                return index;
             }
-            e = e.next;
+            index = (index + 1) & mark;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(final int key) {
+        if (key == 0) {
+            return (V) zeroValue;
         }
-        return null;
+        final int index = find(key);
+        return index >= 0 ? (V) values[index] : null;
     }
 
     public boolean containsKey(final int key) {
-        Entry<V> e;
-        final Entry<V>[] tab;
-        e = (tab = table)[key & (tab.length - 1)];
-        while (e != null) {
-            if (key == e.key) {
-                return true;
-            }
-            e = e.next;
+        if (key == 0) {
+            return hasZeroKey;
         }
-        return false;
+        return find(key) >= 0;
     }
 
     public int[] exportKeys() {
-        int[] keys = new int[this.size];
+        final int[] result = new int[this.size];
         int i = 0;
-        for (Entry<V> entry : table) {
-            while (entry != null) {
-                keys[i++] = entry.key;
-                entry = entry.next;
+        if (hasZeroKey) {
+            result[i++] = 0;
+        }
+        for (int key : this.keys) {
+            if (key != 0) {
+                result[i++] = key;
             }
         }
-        return keys;
+        return result;
     }
 
     public void clear() {
-        this.table = new Entry[this.table.length];
+        this.keys = new int[this.keys.length];
+        this.values = new Object[this.values.length];
+        this.hasZeroKey = false;
+        this.zeroValue = null;
+        this.size = 0;
     }
 
     public void remove(final int key) {
-        Entry<V> e;
-        Entry<V> prev = null;
-        final Entry<V>[] tab;
-        final int index;
-        e = (tab = table)[index = (key & (tab.length - 1))];
-
-        while (e != null) {
-            if (key == e.key) {
-                if (prev != null) {
-                    prev.next = e.next;
-                } else {
-                    tab[index] = e.next;
-                }
+        if (key == 0) {
+            if (hasZeroKey) {
+                hasZeroKey = false;
+                zeroValue = null;
                 size--;
-                return;
             }
-            prev = e;
-            e = e.next;
+            return;
+        }
+        int index = find(key);
+        if (index < 0) {
+            return;
+        }
+        final int[] myKeys = this.keys;
+        final Object[] myValues = this.values;
+        final int mark = myKeys.length - 1;
+        // shift back following entries of the cluster, instead of leaving tombstones
+        for (int next = (index + 1) & mark;; next = (next + 1) & mark) {
+            final int k = myKeys[next];
+            if (k == 0) {
+                break;
+            }
+            final int home = index(k, mark);
+            // move if home of next is not in (index, next]
+            if (((next - home) & mark) >= ((next - index) & mark)) {
+                myKeys[index] = k;
+                myValues[index] = myValues[next];
+                index = next;
+            }
         }
+        myKeys[index] = 0;
+        myValues[index] = null;
+        size--;
     }
 
-    @SuppressWarnings("unchecked")
     private void resize() {
         if (size < threshold) {
             return;
         }
-        final Entry<V>[] oldTable = table;
-        final int oldCapacity = oldTable.length;
+        final int[] oldKeys = this.keys;
+        final Object[] oldValues = this.values;
+        final int oldCapacity = oldKeys.length;
 
         final int newCapacity = oldCapacity << 1;
         if (newCapacity > MAXIMUM_CAPACITY) {
@@ -120,98 +173,126 @@ public final class IntMap<V> implements Iterable<IntMap.Entry<V>> {
             return;
         }
         final int newMark = newCapacity - 1;
-        final Entry<V>[] newTable = new Entry[newCapacity];
+        final int[] newKeys = new int[newCapacity];
+        final Object[] newValues = new Object[newCapacity];
 
         for (int i = oldCapacity; i-- > 0;) {
-            int index;
-            for (Entry<V> old = oldTable[i], e; old != null;) {
-                e = old;
-                old = old.next;
-
-                index = e.key & newMark;
-                e.next = newTable[index];
-                newTable[index] = e;
+            final int key = oldKeys[i];
+            if (key == 0) {
+                continue;
+            }
+            int index = index(key, newMark);
+            while (newKeys[index] != 0) {
+                index = (index + 1) & newMark;
             }
+            newKeys[index] = key;
+            newValues[index] = oldValues[i];
         }
 
         this.threshold = (int) (newCapacity * 0.75f);
-        //Note: must at Last
-        this.table = newTable;
+        this.values = newValues;
+        this.keys = newKeys;
     }
 
-    @SuppressWarnings("unchecked")
-    public V putIfAbsent(int key, V value) {
-        int index;
-
-        Entry<V>[] tab;
-        Entry<V> e = (tab = table)[index = key & (tab.length - 1)];
-        for (; e != null; e = e.next) {
-            if (key == e.key) {
-                return e.value;
+    /**
+     * Find slot of the given non-zero key, or the free slot for it.
+     *
+     * @return slot index, or (-index - 1) of the free slot if not found
+     */
+    private int findForPut(final int key) {
+        final int[] myKeys = this.keys;
+        final int mark = myKeys.length - 1;
+        int index = index(key, mark);
+        int k;
+        while ((k = myKeys[index]) != 0) {
+            if (k == key) {
+                return index;
             }
+            index = (index + 1) & mark;
         }
+        return -index - 1;
+    }
 
+    private void insert(int index, final int key, final Object value) {
         if (size >= threshold) {
             resize();
-            tab = table;
-            index = key & (tab.length - 1);
+            index = -findForPut(key) - 1;
         }
-
-        // creates the new entry.
-        tab[index] = new Entry(key, value, tab[index]);
+        keys[index] = key;
+        values[index] = value;
         size++;
-        return value;
     }
 
     @SuppressWarnings("unchecked")
-    public void put(int key, V value) {
-        int index;
-
-        Entry<V>[] tab;
-        Entry<V> e = (tab = table)[index = key & (tab.length - 1)];
-        for (; e != null; e = e.next) {
-            if (key == e.key) {
-                e.value = value;
-                return;
+    public V putIfAbsent(int key, V value) {
+        if (key == 0) {
+            if (hasZeroKey) {
+                return (V) zeroValue;
             }
+            hasZeroKey = true;
+            zeroValue = value;
+            size++;
+            return value;
         }
-
-        if (size >= threshold) {
-            resize();
-            tab = table;
-            index = key & (tab.length - 1);
+        final int index = findForPut(key);
+        if (index >= 0) {
+            return (V) values[index];
         }
+        insert(-index - 1, key, value);
+        return value;
+    }
 
-        // creates the new entry.
-        tab[index] = new Entry(key, value, tab[index]);
-        size++;
+    public void put(int key, V value) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        final int index = findForPut(key);
+        if (index >= 0) {
+            values[index] = value;
+            return;
+        }
+        insert(-index - 1, key, value);
     }
 
+    /**
+     * Iterate entries, entries are created on the fly.
+     *
+     * @return
+     */
+    @Override
     public Iter<Entry<V>> iterator() {
         return new BaseIter<Entry<V>>() {
-            int cursor;
-            Entry<V> currEntry;
+            int cursor = hasZeroKey ? -1 : 0;
 
             @Override
             public boolean hasNext() {
-                final Entry<V>[] tab = IntMap.this.table;
-                while (currEntry == null && cursor < tab.length) {
-                    currEntry = IntMap.this.table[cursor++];
-                }
-                if (currEntry != null) {
+                if (cursor < 0) {
                     return true;
                 }
-                return false;
+                final int[] myKeys = IntMap.this.keys;
+                while (cursor < myKeys.length && myKeys[cursor] == 0) {
+                    cursor++;
+                }
+                return cursor < myKeys.length;
             }
 
             @Override
+            @SuppressWarnings("unchecked")
             public Entry<V> next() {
                 if (!hasNext()) {
                     throw new NoSuchElementException();
                 }
-                Entry<V> result = currEntry;
-                currEntry = currEntry.next;
-                return result;
+                if (cursor < 0) {
+                    cursor++;
+                    return new Entry<>(0, (V) zeroValue);
+                }
+                final int index = cursor++;
+                return new Entry<>(keys[index], (V) values[index]);
             }
         };
     }
@@ -219,13 +300,11 @@ public final class IntMap<V> implements Iterable<IntMap.Entry<V>> {
     public static final class Entry<V> {
 
         final int key;
-        V value;
-        Entry<V> next;
+        final V value;
 
-        Entry(int key, V value, Entry<V> next) {
+        Entry(int key, V value) {
             this.value = value;
             this.key = key;
-            this.next = next;
         }
 
         public int getKey() {
@@ -0,0 +1,332 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.lang;
+
+/**
+ * Open addressing map with long keys and long values, by linear probing.
+ *
+ * Keys and values are kept in parallel primitive arrays, nothing is boxed or allocated per mapping. Absent keys
+ * are read as 0.
+ *
+ * @see LongMap#hash(long)
+ * @author zqq90
+ */
+public final class LongLongMap {
+
+    private static final int MAXIMUM_CAPACITY = 1 << 29;
+
+    private long[] keys;
+    private long[] values;
+    private int threshold;
+    private int size;
+
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    public LongLongMap(int initialCapacity) {
+        int initlen;
+        if (initialCapacity > MAXIMUM_CAPACITY) {
+            initlen = MAXIMUM_CAPACITY;
+        } else {
+            initlen = 16;
+            while (initlen < initialCapacity) {
+                initlen <<= 1;
+            }
+        }
+        this.keys = new long[initlen];
+        this.values = new long[initlen];
+        this.threshold = (int) (initlen * 0.75f);
+    }
+
+    public LongLongMap() {
+        this(64);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static int index(final long key, final int mark) {
+        return ((int) LongMap.hash(key)) & mark;
+    }
+
+    /**
+     * Find slot of the given non-zero key.
+     *
+     * @return slot index, or -1 if not found
+     */
+    private int find(final long key) {
+        final long[] myKeys = this.keys;
+        final int mark = myKeys.length - 1;
+        int index = index(key, mark);
+        long k;
+        while ((k = myKeys[index]) != 0) {
+            if (k == key) {
+                return index;
+            }
+            index = (index + 1) & mark;
+        }
+        return -1;
+    }
+
+    /**
+     * Find slot of the given non-zero key, or the free slot for it.
+     *
+     * @return slot index, or (-index - 1) of the free slot if not found
+     */
+    private int findForPut(final long key) {
+        final long[] myKeys = this.keys;
+        final int mark = myKeys.length - 1;
+        int index = index(key, mark);
+        long k;
+        while ((k = myKeys[index]) != 0) {
+            if (k == key) {
+                return index;
+            }
+            index = (index + 1) & mark;
+        }
+        return -index - 1;
+    }
+
+    /**
+     * Get value of the given key.
+     *
+     * @param key
+     * @return 0 if absent
+     */
+    public long get(final long key) {
+        return get(key, 0);
+    }
+
+    public long get(final long key, final long defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        final int index = find(key);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    public boolean containsKey(final long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        return find(key) >= 0;
+    }
+
+    public void put(final long key, final long value) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        final int index = findForPut(key);
+        if (index >= 0) {
+            values[index] = value;
+            return;
+        }
+        insert(-index - 1, key, value);
+    }
+
+    /**
+     * Put if absent.
+     *
+     * @param key
+     * @param value
+     * @return current value
+     */
+    public long putIfAbsent(final long key, final long value) {
+        if (key == 0) {
+            if (hasZeroKey) {
+                return zeroValue;
+            }
+            hasZeroKey = true;
+            zeroValue = value;
+            size++;
+            return value;
+        }
+        final int index = findForPut(key);
+        if (index >= 0) {
+            return values[index];
+        }
+        insert(-index - 1, key, value);
+        return value;
+    }
+
+    /**
+     * Add delta to value of the given key, absent value is treated as 0.
+     *
+     * @param key
+     * @param delta
+     * @return new value
+     */
+    public long addTo(final long key, final long delta) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            return zeroValue += delta;
+        }
+        final int index = findForPut(key);
+        if (index >= 0) {
+            return values[index] += delta;
+        }
+        insert(-index - 1, key, delta);
+        return delta;
+    }
+
+    /**
+     * Increase value of the given key by one.
+     *
+     * @param key
+     * @return new value
+     */
+    public long incrementAndGet(final long key) {
+        return addTo(key, 1);
+    }
+
+    /**
+     * Remove the given key.
+     *
+     * @param key
+     * @return removed value, 0 if absent
+     */
+    public long remove(final long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return 0;
+            }
+            final long old = zeroValue;
+            hasZeroKey = false;
+            zeroValue = 0;
+            size--;
+            return old;
+        }
+        int index = find(key);
+        if (index < 0) {
+            return 0;
+        }
+        final long[] myKeys = this.keys;
+        final long[] myValues = this.values;
+        final long old = myValues[index];
+        final int mark = myKeys.length - 1;
+        // shift back following entries of the cluster, instead of leaving tombstones
+        for (int next = (index + 1) & mark;; next = (next + 1) & mark) {
+            final long k = myKeys[next];
+            if (k == 0) {
+                break;
+            }
+            final int home = index(k, mark);
+            // move if home of next is not in (index, next]
+            if (((next - home) & mark) >= ((next - index) & mark)) {
+                myKeys[index] = k;
+                myValues[index] = myValues[next];
+                index = next;
+            }
+        }
+        myKeys[index] = 0;
+        myValues[index] = 0;
+        size--;
+        return old;
+    }
+
+    public void clear() {
+        this.keys = new long[this.keys.length];
+        this.values = new long[this.values.length];
+        this.hasZeroKey = false;
+        this.zeroValue = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Export keys.
+     *
+     * @see #exportValues()
+     * @return keys in the same order with values exported
+     */
+    public long[] exportKeys() {
+        final long[] result = new long[this.size];
+        int i = 0;
+        if (hasZeroKey) {
+            result[i++] = 0;
+        }
+        for (long key : this.keys) {
+            if (key != 0) {
+                result[i++] = key;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Export values.
+     *
+     * @see #exportKeys()
+     * @return values in the same order with keys exported
+     */
+    public long[] exportValues() {
+        final long[] result = new long[this.size];
+        int i = 0;
+        if (hasZeroKey) {
+            result[i++] = zeroValue;
+        }
+        final long[] myKeys = this.keys;
+        final long[] myValues = this.values;
+        for (int j = 0; j < myKeys.length; j++) {
+            if (myKeys[j] != 0) {
+                result[i++] = myValues[j];
+            }
+        }
+        return result;
+    }
+
+    private void insert(int index, final long key, final long value) {
+        if (size >= threshold) {
+            resize();
+            index = -findForPut(key) - 1;
+        }
+        keys[index] = key;
+        values[index] = value;
+        size++;
+    }
+
+    private void resize() {
+        if (size < threshold) {
+            return;
+        }
+        final long[] oldKeys = this.keys;
+        final long[] oldValues = this.values;
+        final int oldCapacity = oldKeys.length;
+
+        final int newCapacity = oldCapacity << 1;
+        if (newCapacity > MAXIMUM_CAPACITY) {
+            if (threshold == MAXIMUM_CAPACITY - 1) {
+                throw new IllegalStateException("Capacity exhausted.");
+            }
+            threshold = MAXIMUM_CAPACITY - 1;
+            return;
+        }
+        final int newMark = newCapacity - 1;
+        final long[] newKeys = new long[newCapacity];
+        final long[] newValues = new long[newCapacity];
+
+        for (int i = oldCapacity; i-- > 0;) {
+            final long key = oldKeys[i];
+            if (key == 0) {
+                continue;
+            }
+            int index = index(key, newMark);
+            while (newKeys[index] != 0) {
+                index = (index + 1) & newMark;
+            }
+            newKeys[index] = key;
+            newValues[index] = oldValues[i];
+        }
+
+        this.threshold = (int) (newCapacity * 0.75f);
+        this.values = newValues;
+        this.keys = newKeys;
+    }
+}
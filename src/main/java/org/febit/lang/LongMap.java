@@ -2,6 +2,10 @@
 package org.febit.lang;
 
 /**
+ * Open addressing map with long keys, by linear probing.
+ *
+ * Keys and values are kept in parallel arrays, no entry is allocated per mapping. Slot with key 0 is free, key 0
+ * itself is stored aside.
  *
  * @author zqq90
  */
@@ -9,11 +13,14 @@ public final class LongMap<V> {
 
     private static final int MAXIMUM_CAPACITY = 1 << 29;
 
-    private Entry<V>[] table;
+    private long[] keys;
+    private Object[] values;
     private int threshold;
     private int size;
 
-    @SuppressWarnings("unchecked")
+    private boolean hasZeroKey;
+    private Object zeroValue;
+
     public LongMap(int initialCapacity) {
         int initlen;
         if (initialCapacity > MAXIMUM_CAPACITY) {
@@ -24,22 +31,11 @@ public final class LongMap<V> {
                 initlen <<= 1;
             }
         }
-        this.table = new Entry[initlen];
+        this.keys = new long[initlen];
+        this.values = new Object[initlen];
         this.threshold = (int) (initlen * 0.75f);
     }
 
-    public long[] exportKeys() {
-        long[] keys = new long[this.size];
-        int i = 0;
-        for (Entry<V> entry : table) {
-            while (entry != null) {
-                keys[i++] = entry.key;
-                entry = entry.next;
-            }
-        }
-        return keys;
-    }
-
     public LongMap() {
         this(64);
     }
@@ -48,65 +44,123 @@ public final class LongMap<V> {
         return size;
     }
 
-    public V get(final long key) {
-        Entry<V> e;
-        final Entry<V>[] tab;
-        e = (tab = table)[((int) key) & (tab.length - 1)];
-        while (e != null) {
-            if (key == e.key) {
-                return e.value;
+    /**
+     * Spread bits of key by the murmur3 finalizer, high bits are mixed into low bits.
+     *
+     * @see IntMap#hash(int)
+     */
+    static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static int index(final long key, final int mark) {
+        return ((int) hash(key)) & mark;
+    }
+
+    /**
+     * Find slot of the given non-zero key.
+     *
+     * @return slot index, or -1 if not found
+     */
+    private int find(final long key) {
+        final long[] myKeys = this.keys;
+        final int mark = myKeys.length - 1;
+        int index = index(key, mark);
+        long k;
+        while ((k = myKeys[index]) != 0) {
+            if (k == key) {
+                return index;
             }
-            e = e.next;
+            index = (index + 1) & mark;
         }
-        return null;
+        return -1;
     }
 
-    public boolean containsKey(long key) {
-        Entry<V> e;
-        final Entry<V>[] tab;
-        e = (tab = table)[((int) key) & (tab.length - 1)];
-        while (e != null) {
-            if (key == e.key) {
-                return true;
+    @SuppressWarnings("unchecked")
+    public V get(final long key) {
+        if (key == 0) {
+            return (V) zeroValue;
+        }
+        final int index = find(key);
+        return index >= 0 ? (V) values[index] : null;
+    }
+
+    public boolean containsKey(final long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        return find(key) >= 0;
+    }
+
+    public long[] exportKeys() {
+        final long[] result = new long[this.size];
+        int i = 0;
+        if (hasZeroKey) {
+            result[i++] = 0;
+        }
+        for (long key : this.keys) {
+            if (key != 0) {
+                result[i++] = key;
             }
-            e = e.next;
         }
-        return false;
+        return result;
     }
 
     public void clear() {
-        this.table = new Entry[this.table.length];
+        this.keys = new long[this.keys.length];
+        this.values = new Object[this.values.length];
+        this.hasZeroKey = false;
+        this.zeroValue = null;
+        this.size = 0;
     }
 
     public void remove(final long key) {
-        Entry<V> e;
-        Entry<V> prev = null;
-        final Entry<V>[] tab;
-        final int index;
-        e = (tab = table)[index = (((int) key) & (tab.length - 1))];
-
-        while (e != null) {
-            if (key == e.key) {
-                if (prev != null) {
-                    prev.next = e.next;
-                } else {
-                    tab[index] = e.next;
-                }
+        if (key == 0) {
+            if (hasZeroKey) {
+                hasZeroKey = false;
+                zeroValue = null;
                 size--;
-                return;
             }
-            prev = e;
-            e = e.next;
+            return;
+        }
+        int index = find(key);
+        if (index < 0) {
+            return;
+        }
+        final long[] myKeys = this.keys;
+        final Object[] myValues = this.values;
+        final int mark = myKeys.length - 1;
+        // shift back following entries of the cluster, instead of leaving tombstones
+        for (int next = (index + 1) & mark;; next = (next + 1) & mark) {
+            final long k = myKeys[next];
+            if (k == 0) {
+                break;
+            }
+            final int home = index(k, mark);
+            // move if home of next is not in (index, next]
+            if (((next - home) & mark) >= ((next - index) & mark)) {
+                myKeys[index] = k;
+                myValues[index] = myValues[next];
+                index = next;
+            }
         }
+        myKeys[index] = 0;
+        myValues[index] = null;
+        size--;
     }
 
-    @SuppressWarnings("unchecked")
     private void resize() {
         if (size < threshold) {
             return;
         }
-        final Entry<V>[] oldTable = table;
-        final int oldCapacity = oldTable.length;
+        final long[] oldKeys = this.keys;
+        final Object[] oldValues = this.values;
+        final int oldCapacity = oldKeys.length;
 
         final int newCapacity = oldCapacity << 1;
         if (newCapacity > MAXIMUM_CAPACITY) {
@@ -117,83 +171,89 @@ public final class LongMap<V> {
             return;
         }
         final int newMark = newCapacity - 1;
-        final Entry<V>[] newTable = new Entry[newCapacity];
+        final long[] newKeys = new long[newCapacity];
+        final Object[] newValues = new Object[newCapacity];
 
         for (int i = oldCapacity; i-- > 0;) {
-            int index;
-            for (Entry<V> old = oldTable[i], e; old != null;) {
-                e = old;
-                old = old.next;
-
-                index = ((int) e.key) & newMark;
-                e.next = newTable[index];
-                newTable[index] = e;
+            final long key = oldKeys[i];
+            if (key == 0) {
+                continue;
+            }
+            int index = index(key, newMark);
+            while (newKeys[index] != 0) {
+                index = (index + 1) & newMark;
             }
+            newKeys[index] = key;
+            newValues[index] = oldValues[i];
         }
 
         this.threshold = (int) (newCapacity * 0.75f);
-        //Note: must at Last
-        this.table = newTable;
+        this.values = newValues;
+        this.keys = newKeys;
     }
 
-    @SuppressWarnings("unchecked")
-    public V putIfAbsent(long key, V value) {
-        int index;
-
-        Entry<V>[] tab;
-        Entry<V> e = (tab = table)[index = ((int) key) & (tab.length - 1)];
-        for (; e != null; e = e.next) {
-            if (key == e.key) {
-                return e.value;
+    /**
+     * Find slot of the given non-zero key, or the free slot for it.
+     *
+     * @return slot index, or (-index - 1) of the free slot if not found
+     */
+    private int findForPut(final long key) {
+        final long[] myKeys = this.keys;
+        final int mark = myKeys.length - 1;
+        int index = index(key, mark);
+        long k;
+        while ((k = myKeys[index]) != 0) {
+            if (k == key) {
+                return index;
             }
+            index = (index + 1) & mark;
         }
+        return -index - 1;
+    }
 
+    private void insert(int index, final long key, final Object value) {
         if (size >= threshold) {
             resize();
-            tab = table;
-            index = ((int) key) & (tab.length - 1);
+            index = -findForPut(key) - 1;
         }
-
-        // creates the new entry.
-        tab[index] = new Entry(key, value, tab[index]);
+        keys[index] = key;
+        values[index] = value;
         size++;
-        return value;
     }
 
     @SuppressWarnings("unchecked")
-    public void put(long key, V value) {
-        int index;
-
-        Entry<V>[] tab;
-        Entry<V> e = (tab = table)[index = ((int) key) & (tab.length - 1)];
-        for (; e != null; e = e.next) {
-            if (key == e.key) {
-                e.value = value;
-                return;
+    public V putIfAbsent(long key, V value) {
+        if (key == 0) {
+            if (hasZeroKey) {
+                return (V) zeroValue;
             }
+            hasZeroKey = true;
+            zeroValue = value;
+            size++;
+            return value;
         }
-
-        if (size >= threshold) {
-            resize();
-            tab = table;
-            index = ((int) key) & (tab.length - 1);
+        final int index = findForPut(key);
+        if (index >= 0) {
+            return (V) values[index];
         }
-
-        // creates the new entry.
-        tab[index] = new Entry(key, value, tab[index]);
-        size++;
+        insert(-index - 1, key, value);
+        return value;
     }
 
-    private static final class Entry<V> {
-
-        final long key;
-        V value;
-        Entry<V> next;
-
-        Entry(long key, V value, Entry<V> next) {
-            this.value = value;
-            this.key = key;
-            this.next = next;
+    public void put(long key, V value) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        final int index = findForPut(key);
+        if (index >= 0) {
+            values[index] = value;
+            return;
         }
+        insert(-index - 1, key, value);
     }
 }
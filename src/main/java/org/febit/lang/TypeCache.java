@@ -0,0 +1,59 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.lang;
+
+/**
+ * Per-type metadata, resolved once for each class and held by the class itself (see {@link ClassValue}).
+ *
+ * Lookups never lock, and unlike a static map keyed by class, a cached value doesn't keep its class and class loader
+ * alive. Each kind of metadata has its own cache.
+ *
+ * <pre>
+ *   static final TypeCache&lt;Map&lt;String, Setter&gt;&gt; SETTERS = TypeCache.create(new Function1&lt;..&gt;() {...});
+ *   SETTERS.get(User.class);
+ * </pre>
+ *
+ * Note: resolving could run more than once for a class when racing, only one result is kept, so resolving should
+ * have no side effects. Null values are cached too.
+ *
+ * @author zqq90
+ * @param <V>
+ */
+public abstract class TypeCache<V> {
+
+    public static <V> TypeCache<V> create(final Function1<V, Class> resolver) {
+        return new TypeCache<V>() {
+            @Override
+            protected V resolve(Class type) {
+                return resolver.call(type);
+            }
+        };
+    }
+
+    private final ClassValue<V> values = new ClassValue<V>() {
+        @Override
+        protected V computeValue(Class<?> type) {
+            return resolve(type);
+        }
+    };
+
+    /**
+     * Resolve metadata of given type.
+     *
+     * @param type
+     * @return
+     */
+    protected abstract V resolve(Class type);
+
+    public V get(Class type) {
+        return values.get(type);
+    }
+
+    /**
+     * Drop the cached value of given type, it will be resolved again when next get.
+     *
+     * @param type
+     */
+    public void remove(Class type) {
+        values.remove(type);
+    }
+}
@@ -1,61 +1,232 @@
 // Copyright (c) 2013-present, febit.org. All Rights Reserved.
 package org.febit.util;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.AbstractMap;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import org.febit.lang.Iter;
+import org.febit.lang.iter.BaseIter;
 
 /**
+ * Counter of objects, in order of first counted.
+ *
+ * Counts are kept in an int[] in parallel with keys, located by an open addressing table of positions, so counting
+ * never boxes.
  *
  * @author zqq90
  */
 public class Counter<T> implements Iterable<Map.Entry<T, Integer>> {
 
-    protected final LinkedHashMap<T, Integer> map = new LinkedHashMap<>();
+    protected Object[] keys;
+    protected int[] counts;
+    protected int size;
+
+    /**
+     * Position in keys plus one of each slot, 0 if free.
+     */
+    protected int[] slots;
+
+    public Counter() {
+        this(16);
+    }
+
+    public Counter(int initialCapacity) {
+        int len = 16;
+        while (len < initialCapacity) {
+            len <<= 1;
+        }
+        this.keys = new Object[len];
+        this.counts = new int[len];
+        this.slots = new int[len << 1];
+    }
 
     public int size() {
-        return this.map.size();
+        return this.size;
+    }
+
+    protected static int hash(Object key) {
+        int h = key != null ? key.hashCode() : 0;
+        // murmur3 finalizer
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Find position in keys.
+     *
+     * @return position, or (-slot - 1) of the free slot if not found
+     */
+    protected int find(final Object key) {
+        final int[] mySlots = this.slots;
+        final Object[] myKeys = this.keys;
+        final int mark = mySlots.length - 1;
+        int slot = hash(key) & mark;
+        int pos;
+        while ((pos = mySlots[slot]) != 0) {
+            if (Objects.equals(myKeys[pos - 1], key)) {
+                return pos - 1;
+            }
+            slot = (slot + 1) & mark;
+        }
+        return -slot - 1;
     }
 
     public int getCount(T key) {
-        Integer count = this.map.get(key);
-        return count == null ? 0 : count;
+        final int pos = find(key);
+        return pos >= 0 ? this.counts[pos] : 0;
     }
 
     public int inc(T key, int number) {
-        int count = getCount(key);
-        count += number;
-        this.map.put(key, count);
-        return count;
+        final int pos = find(key);
+        if (pos >= 0) {
+            return this.counts[pos] += number;
+        }
+        add(-pos - 1, key, number);
+        return number;
     }
 
     public int inc(T key) {
         return inc(key, 1);
     }
 
+    protected void add(int slot, final T key, final int count) {
+        if (this.size == this.keys.length) {
+            grow();
+            slot = -find(key) - 1;
+        }
+        final int pos = this.size++;
+        this.keys[pos] = key;
+        this.counts[pos] = count;
+        this.slots[slot] = pos + 1;
+    }
+
+    protected void grow() {
+        final int len = this.keys.length << 1;
+        this.keys = Arrays.copyOf(this.keys, len);
+        this.counts = Arrays.copyOf(this.counts, len);
+        // at most half full
+        final int[] mySlots = new int[len << 1];
+        final int mark = mySlots.length - 1;
+        for (int pos = 0; pos < this.size; pos++) {
+            int slot = hash(this.keys[pos]) & mark;
+            while (mySlots[slot] != 0) {
+                slot = (slot + 1) & mark;
+            }
+            mySlots[slot] = pos + 1;
+        }
+        this.slots = mySlots;
+    }
+
+    /**
+     * Remove key at given position, following keys are moved forward to keep the order.
+     */
+    protected void removeAt(final int pos) {
+        final int moved = this.size - pos - 1;
+        System.arraycopy(this.keys, pos + 1, this.keys, pos, moved);
+        System.arraycopy(this.counts, pos + 1, this.counts, pos, moved);
+        this.size--;
+        this.keys[this.size] = null;
+        this.counts[this.size] = 0;
+        // positions changed, rebuild slots
+        final int[] mySlots = this.slots;
+        Arrays.fill(mySlots, 0);
+        final int mark = mySlots.length - 1;
+        for (int i = 0; i < this.size; i++) {
+            int slot = hash(this.keys[i]) & mark;
+            while (mySlots[slot] != 0) {
+                slot = (slot + 1) & mark;
+            }
+            mySlots[slot] = i + 1;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Map.Entry<T, Integer> createEntry(int pos) {
+        return new CountEntry((T) this.keys[pos], this.counts[pos]);
+    }
+
+    /**
+     * Entry of a key, setting value writes back to the counter.
+     */
+    protected class CountEntry extends AbstractMap.SimpleEntry<T, Integer> {
+
+        protected CountEntry(T key, int count) {
+            super(key, count);
+        }
+
+        @Override
+        public Integer setValue(Integer value) {
+            final int pos = find(getKey());
+            if (pos >= 0) {
+                counts[pos] = value;
+            }
+            return super.setValue(value);
+        }
+    }
+
     @Override
     public Iterator<Map.Entry<T, Integer>> iterator() {
-        return this.map.entrySet().iterator();
+        return new BaseIter<Map.Entry<T, Integer>>() {
+            int cursor = 0;
+            boolean removed;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < size;
+            }
+
+            @Override
+            public Map.Entry<T, Integer> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                removed = false;
+                return createEntry(cursor++);
+            }
+
+            @Override
+            public void remove() {
+                if (cursor == 0 || removed) {
+                    throw new IllegalStateException();
+                }
+                removeAt(--cursor);
+                removed = true;
+            }
+        };
     }
 
     protected Iter<Map.Entry<T, Integer>> iterator(final boolean asc) {
-        ArrayList<Map.Entry<T, Integer>> entryList = new ArrayList<>(this.map.entrySet());
-        Collections.sort(entryList,
-                new Comparator<Map.Entry<T, Integer>>() {
+        // packed count and position, sorted as primitives
+        final int len = this.size;
+        final long[] packed = new long[len];
+        for (int i = 0; i < len; i++) {
+            final long count = asc ? this.counts[i] : ~this.counts[i];
+            packed[i] = (count << 32) | i;
+        }
+        Arrays.sort(packed);
+        return new BaseIter<Map.Entry<T, Integer>>() {
+            int cursor = 0;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < len;
+            }
+
             @Override
-            public int compare(Map.Entry<T, Integer> entry1, Map.Entry<T, Integer> entry2) {
-                if (asc) {
-                    return Integer.compare(entry1.getValue(), entry2.getValue());
-                } else {
-                    return Integer.compare(entry2.getValue(), entry1.getValue());
+            public Map.Entry<T, Integer> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
                 }
+                return createEntry((int) packed[cursor++]);
             }
-        });
-        return CollectionUtil.toIter(entryList.iterator());
+        };
     }
 
     public Iter<Map.Entry<T, Integer>> descIterator() {
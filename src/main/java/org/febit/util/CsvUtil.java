@@ -21,22 +21,32 @@ public class CsvUtil extends jodd.util.CsvUtil {
                 .map(new Function1<String[], String>() {
                     @Override
                     public String[] call(String line) {
-                        if (line == null) {
-                            return null;
-                        }
-                        line = line.trim();
-                        if (line.isEmpty()) {
-                            return null;
-                        }
-                        if (line.charAt(0) == '#') {
-                            return null;
-                        }
-                        return toStringArray(line);
+                        return toRow(line);
                     }
                 })
                 .excludeNull();
     }
 
+    /**
+     * Parse a line as {@link #linesIter(Reader)} does.
+     *
+     * @param line
+     * @return null if blank or comment
+     */
+    public static String[] toRow(String line) {
+        if (line == null) {
+            return null;
+        }
+        line = line.trim();
+        if (line.isEmpty()) {
+            return null;
+        }
+        if (line.charAt(0) == '#') {
+            return null;
+        }
+        return toStringArray(line);
+    }
+
     public static void appendRow(Writer writer, String... elements) throws IOException {
         for (int i = 0, len = elements.length; i < len; i++) {
             if (i != 0) {
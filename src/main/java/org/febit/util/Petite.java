@@ -210,7 +210,7 @@ public class Petite {
 
     protected void doInject(final String name, final Object bean) {
 
-        final Map<String, Setter> setters = AccessFactory.resolveSetters(bean.getClass());
+        final Map<String, Setter> setters = AccessFactory.getSetters(bean.getClass());
         final Map<String, Object> params = this.propsMgr.resolveParams(name);
 
         //Setters
@@ -0,0 +1,173 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.agent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.febit.lang.Function1;
+
+/**
+ * 文件重载代理. 后台线程检查文件修改时间, 变化后重新构建实例并原子替换.
+ *
+ * Notice: 读取从不阻塞, 也不会读到未构建完成的实例; 构建失败或校验不通过时, 沿用旧实例.
+ *
+ * @author zqq90
+ * @param <T>
+ */
+public abstract class FileReloadAgent<T> implements Closeable {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(FileReloadAgent.class);
+
+    protected final Path path;
+
+    //检查间隔 unit: ms
+    protected final long interval;
+
+    protected volatile T instance;
+    protected long lastModified = Long.MIN_VALUE;
+    protected long lastSize = -1L;
+
+    private ScheduledExecutorService executor;
+
+    protected abstract T create(Path path) throws IOException;
+
+    /**
+     *
+     * @param path 文件
+     * @param interval 检查间隔毫秒
+     */
+    protected FileReloadAgent(Path path, long interval) {
+        this.path = path;
+        this.interval = interval;
+    }
+
+    /**
+     * 校验新实例, 不通过时沿用旧实例.
+     *
+     * @param instance
+     * @return
+     */
+    protected boolean validate(T instance) {
+        return instance != null;
+    }
+
+    /**
+     * 获取当前实例, 不阻塞.
+     *
+     * @return null if never loaded
+     */
+    public T get() {
+        return this.instance;
+    }
+
+    /**
+     * 确保实例可用, 首次加载失败时抛出异常.
+     *
+     * @return
+     * @throws IOException
+     */
+    public FileReloadAgent<T> ensure() throws IOException {
+        if (this.instance == null && !reload() && this.instance == null) {
+            throw new IOException("Failed to load: " + this.path);
+        }
+        return this;
+    }
+
+    /**
+     * 如果文件有变化, 重新构建实例.
+     *
+     * @return 是否替换了实例
+     * @throws IOException 如果读取文件属性失败
+     */
+    public synchronized boolean reload() throws IOException {
+        final long modified = Files.getLastModifiedTime(this.path).toMillis();
+        final long size = Files.size(this.path);
+        if (modified == this.lastModified && size == this.lastSize) {
+            return false;
+        }
+        final T result;
+        try {
+            result = create(this.path);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to reload: " + this.path, e);
+            return false;
+        }
+        //无论是否通过校验, 同一版本不再重复构建
+        this.lastModified = modified;
+        this.lastSize = size;
+        if (!validate(result)) {
+            LOG.warn("Invalid file, keep the old instance: {}", this.path);
+            return false;
+        }
+        T old = this.instance;
+        this.instance = result;
+        onReloaded(old, result);
+        return true;
+    }
+
+    /**
+     * 替换实例后回调, 在重载线程执行.
+     *
+     * @param old null if first
+     * @param current
+     */
+    protected void onReloaded(T old, T current) {
+        LOG.info("Reloaded: {}", this.path);
+    }
+
+    /**
+     * 启动后台检查线程.
+     *
+     * @return
+     */
+    public synchronized FileReloadAgent<T> start() {
+        if (this.executor != null) {
+            return this;
+        }
+        final String name = "reload-" + this.path.getFileName();
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    reload();
+                } catch (Exception e) {
+                    LOG.warn("Failed to check file: " + path, e);
+                }
+            }
+        }, 0, this.interval, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * 停止后台检查线程.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    public static <T> FileReloadAgent<T> create(Path path, long interval, final Function1<T, Path> func) {
+        return new FileReloadAgent<T>(path, interval) {
+            @Override
+            protected T create(Path path) {
+                return func.call(path);
+            }
+        };
+    }
+}
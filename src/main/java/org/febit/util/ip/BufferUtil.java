@@ -0,0 +1,61 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.ip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *
+ * @author zqq90
+ */
+final class BufferUtil {
+
+    private BufferUtil() {
+    }
+
+    /**
+     * Map whole file as read only.
+     *
+     * Note: the mapping is still valid after the channel closed.
+     *
+     * @param channel
+     * @return
+     * @throws IOException
+     */
+    static ByteBuffer map(final FileChannel channel) throws IOException {
+        final long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("File too large to map: " + size);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    static ByteBuffer map(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return map(channel);
+        }
+    }
+
+    static byte[] getBytes(final ByteBuffer buffer, final int offset, final int len) {
+        final byte[] bytes = new byte[len];
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + offset, bytes, 0, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                bytes[i] = buffer.get(offset + i);
+            }
+        }
+        return bytes;
+    }
+
+    static String getString(final ByteBuffer buffer, final int offset, final int len, final Charset charset) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, len, charset);
+        }
+        return new String(getBytes(buffer, offset, len), charset);
+    }
+}
@@ -5,6 +5,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import jodd.io.StreamUtil;
@@ -15,10 +17,36 @@ import jodd.io.StreamUtil;
  */
 public class IpBlankSeeker {
 
-    protected final long[] _datas;
+    /**
+     * Count of boundaries, followed by boundaries as unsigned int.
+     */
+    protected final ByteBuffer _buffer;
+    protected final int _size;
 
+    /**
+     * @deprecated boundaries are read from a buffer, given ones are copied into one
+     */
+    @Deprecated
     protected IpBlankSeeker(long datas[]) {
-        this._datas = datas;
+        this(wrapBoundaries(datas));
+    }
+
+    protected IpBlankSeeker(ByteBuffer buffer) {
+        this._buffer = buffer;
+        this._size = buffer.getInt(0);
+    }
+
+    protected static ByteBuffer wrapBoundaries(final long[] datas) {
+        final ByteBuffer buf = ByteBuffer.allocate((datas.length + 1) << 2);
+        buf.putInt(0, datas.length);
+        for (int i = 0; i < datas.length; i++) {
+            buf.putInt((i + 1) << 2, (int) datas[i]);
+        }
+        return buf;
+    }
+
+    protected long getBoundary(int index) {
+        return IpUtil.int2long(this._buffer.getInt((index + 1) << 2));
     }
 
     public boolean isWhite(String ipv4) {
@@ -31,27 +59,23 @@ public class IpBlankSeeker {
 
     public boolean isWhite(long ipv4) {
         int index = findIndex(ipv4);
-        //System.out.println(IpUtil.ipToString(ipv4) +  " index="+index +" " 
-        //        +(index >0 ? IpUtil.ipToString(this._datas[index-1]): "0.0.0.0") 
-        //        +(index <this._datas.length ? IpUtil.ipToString(this._datas[index]): "255.255.255.255")
-        //);
         return index >= 0 && (index & 1) == 1;
     }
 
     protected int findIndex(long ipv4) {
-        final long[] datas = this._datas;
         int start = 0;
-        int end = datas.length - 1;
+        int end = this._size - 1;
 
-        if (ipv4 < datas[start]
-                || ipv4 > datas[end]) {
+        if (end < 0
+                || ipv4 < getBoundary(start)
+                || ipv4 > getBoundary(end)) {
             return -1;
         }
         for (;;) {
-            if (ipv4 <= datas[start]) {
+            if (ipv4 <= getBoundary(start)) {
                 return start;
             }
-            if (ipv4 > datas[end]) {
+            if (ipv4 > getBoundary(end)) {
                 return end + 1;
             }
 
@@ -60,7 +84,7 @@ public class IpBlankSeeker {
             }
 
             int mid = (start + end) / 2;
-            long midIp = datas[mid];
+            long midIp = getBoundary(mid);
 
             if (ipv4 < midIp) {
                 end = mid;
@@ -84,20 +108,57 @@ public class IpBlankSeeker {
         return create(Files.readAllBytes(path));
     }
 
+    /**
+     * Create a seeker backed by a read-only mapping of the given file.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static IpBlankSeeker createMapped(final Path path) throws IOException {
+        return create(BufferUtil.map(path));
+    }
+
+    /**
+     * Create a seeker backed by a read-only mapping of the given channel.
+     *
+     * @param channel
+     * @return
+     * @throws IOException
+     */
+    public static IpBlankSeeker create(final FileChannel channel) throws IOException {
+        return create(BufferUtil.map(channel));
+    }
+
     public static IpBlankSeeker create(InputStream in) throws IOException {
         return create(StreamUtil.readBytes(in));
     }
 
     public static IpBlankSeeker create(final byte[] buffer) {
-        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
-        int len = byteBuffer.getInt();
-        long[] result = new long[len];
-        long last = 0;
-        for (int i = 0; i < len; i++) {
-            result[i] = IpUtil.int2long(byteBuffer.getInt());
-            assert last < result[i];
-            last = result[i];
+        return create(ByteBuffer.wrap(buffer));
+    }
+
+    /**
+     * Create a seeker reading from the given buffer directly.
+     *
+     * @param buffer database, will not be modified
+     * @return
+     */
+    public static IpBlankSeeker create(final ByteBuffer buffer) {
+        IpBlankSeeker seeker = new IpBlankSeeker(buffer.duplicate().order(ByteOrder.BIG_ENDIAN));
+        assert seeker.isAscending();
+        return seeker;
+    }
+
+    protected boolean isAscending() {
+        long last = -1;
+        for (int i = 0; i < this._size; i++) {
+            long boundary = getBoundary(i);
+            if (last >= boundary) {
+                return false;
+            }
+            last = boundary;
         }
-        return new IpBlankSeeker(result);
+        return true;
     }
 }
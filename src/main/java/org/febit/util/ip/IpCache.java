@@ -0,0 +1,253 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.ip;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.febit.lang.Function0;
+import org.febit.util.agent.FileReloadAgent;
+
+/**
+ * Lock-free cache of locate results, keyed by IPv4.
+ *
+ * Table is 4-way set associative, on miss the least recently used entry in the set is evicted (approximately,
+ * access stamps are written without synchronizing). Each table belongs to one seeker instance, a new table is used
+ * once the seeker is replaced, so results of the old database never survive a reload.
+ *
+ * @author zqq90
+ * @param <S> seeker
+ * @param <V> result
+ */
+public abstract class IpCache<S, V> {
+
+    protected static final int WAYS = 4;
+    private static final int COUNTER_STRIPES = 16;
+    // longs per stripe, avoid false sharing
+    private static final int COUNTER_PADDING = 8;
+
+    protected static final class Entry<V> {
+
+        final int ip;
+        final V value;
+        int stamp;
+
+        Entry(int ip, V value, int stamp) {
+            this.ip = ip;
+            this.value = value;
+            this.stamp = stamp;
+        }
+    }
+
+    protected static final class Table<S, V> {
+
+        final S seeker;
+        final AtomicReferenceArray<Entry<V>> entries;
+        /**
+         * Coarse clock, increased on miss, could wrap.
+         */
+        int clock;
+
+        Table(S seeker, int size) {
+            this.seeker = seeker;
+            this.entries = new AtomicReferenceArray<>(size);
+        }
+    }
+
+    protected final Function0<S> seekerProvider;
+    protected final int setMask;
+    protected final int size;
+    private final AtomicLongArray counters;
+    protected volatile Table<S, V> table;
+
+    /**
+     *
+     * @param seekerProvider supplies the current seeker, called on every lookup
+     * @param capacity max count of cached ips, will be rounded up to power of 2
+     */
+    protected IpCache(Function0<S> seekerProvider, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int cap = WAYS;
+        while (cap < capacity && cap < (1 << 30)) {
+            cap <<= 1;
+        }
+        this.seekerProvider = seekerProvider;
+        this.size = cap;
+        this.setMask = (cap / WAYS) - 1;
+        this.counters = new AtomicLongArray(COUNTER_STRIPES * COUNTER_PADDING * 2);
+    }
+
+    /**
+     * Locate without cache.
+     *
+     * @param seeker
+     * @param ipv4
+     * @return
+     */
+    protected abstract V load(S seeker, int ipv4);
+
+    public V get(final String ipv4) {
+        final long ip = IpUtil.parseIpv4(ipv4);
+        return ip >= 0 ? get((int) ip) : null;
+    }
+
+    public V get(final long ipv4) {
+        return get((int) ipv4);
+    }
+
+    public V get(final int ipv4) {
+        final S seeker = this.seekerProvider.call();
+        if (seeker == null) {
+            return null;
+        }
+        final Table<S, V> myTable = resolveTable(seeker);
+        final AtomicReferenceArray<Entry<V>> entries = myTable.entries;
+        final int start = (hash(ipv4) & this.setMask) * WAYS;
+        final int end = start + WAYS;
+
+        int free = -1;
+        int victim = -1;
+        int victimStamp = 0;
+        for (int i = start; i < end; i++) {
+            final Entry<V> entry = entries.get(i);
+            if (entry == null) {
+                if (free < 0) {
+                    free = i;
+                }
+                continue;
+            }
+            if (entry.ip == ipv4) {
+                // skip writing if unchanged, keep the line shared between readers
+                final int clock = myTable.clock;
+                if (entry.stamp != clock) {
+                    entry.stamp = clock;
+                }
+                count(0);
+                return entry.value;
+            }
+            // compare by difference, stays in order when clock wraps
+            if (victim < 0 || entry.stamp - victimStamp < 0) {
+                victim = i;
+                victimStamp = entry.stamp;
+            }
+        }
+        count(1);
+        final V value = load(seeker, ipv4);
+        if (value != null) {
+            entries.lazySet(free >= 0 ? free : victim, new Entry<>(ipv4, value, ++myTable.clock));
+        }
+        return value;
+    }
+
+    protected Table<S, V> resolveTable(final S seeker) {
+        Table<S, V> myTable = this.table;
+        if (myTable == null || myTable.seeker != seeker) {
+            myTable = new Table<>(seeker, this.size);
+            this.table = myTable;
+        }
+        return myTable;
+    }
+
+    protected static int hash(final int ip) {
+        final int h = ip * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void count(final int type) {
+        final int stripe = (int) Thread.currentThread().getId() & (COUNTER_STRIPES - 1);
+        this.counters.incrementAndGet(((stripe << 1) | type) * COUNTER_PADDING);
+    }
+
+    private long sumCounter(final int type) {
+        long sum = 0;
+        for (int i = 0; i < COUNTER_STRIPES; i++) {
+            sum += this.counters.get(((i << 1) | type) * COUNTER_PADDING);
+        }
+        return sum;
+    }
+
+    public long getHitCount() {
+        return sumCounter(0);
+    }
+
+    public long getMissCount() {
+        return sumCounter(1);
+    }
+
+    public int getCapacity() {
+        return this.size;
+    }
+
+    /**
+     * Drop all cached results, counters are kept.
+     */
+    public void clear() {
+        this.table = null;
+    }
+
+    protected static <S> Function0<S> constant(final S seeker) {
+        return new Function0<S>() {
+            @Override
+            public S call() {
+                return seeker;
+            }
+        };
+    }
+
+    protected static <S> Function0<S> fromAgent(final FileReloadAgent<S> agent) {
+        return new Function0<S>() {
+            @Override
+            public S call() {
+                return agent.get();
+            }
+        };
+    }
+
+    public static IpCache<IpSeeker, IpSeeker.Location> create(IpSeeker seeker, int capacity) {
+        return create(constant(seeker), capacity);
+    }
+
+    /**
+     * Cache of the seeker held by agent, cached results are dropped once reloaded.
+     *
+     * @param agent
+     * @param capacity
+     * @return
+     */
+    public static IpCache<IpSeeker, IpSeeker.Location> create(FileReloadAgent<IpSeeker> agent, int capacity) {
+        return create(fromAgent(agent), capacity);
+    }
+
+    public static IpCache<IpSeeker, IpSeeker.Location> create(Function0<IpSeeker> seekerProvider, int capacity) {
+        return new IpCache<IpSeeker, IpSeeker.Location>(seekerProvider, capacity) {
+            @Override
+            protected IpSeeker.Location load(IpSeeker seeker, int ipv4) {
+                return seeker.locate(ipv4);
+            }
+        };
+    }
+
+    public static IpCache<Mon17IpSeeker, Mon17IpSeeker.Location> createMon17(Mon17IpSeeker seeker, int capacity) {
+        return createMon17(constant(seeker), capacity);
+    }
+
+    /**
+     * Cache of the seeker held by agent, cached results are dropped once reloaded.
+     *
+     * @param agent
+     * @param capacity
+     * @return
+     */
+    public static IpCache<Mon17IpSeeker, Mon17IpSeeker.Location> createMon17(FileReloadAgent<Mon17IpSeeker> agent, int capacity) {
+        return createMon17(fromAgent(agent), capacity);
+    }
+
+    public static IpCache<Mon17IpSeeker, Mon17IpSeeker.Location> createMon17(Function0<Mon17IpSeeker> seekerProvider, int capacity) {
+        return new IpCache<Mon17IpSeeker, Mon17IpSeeker.Location>(seekerProvider, capacity) {
+            @Override
+            protected Mon17IpSeeker.Location load(Mon17IpSeeker seeker, int ipv4) {
+                return seeker.locate(ipv4);
+            }
+        };
+    }
+}
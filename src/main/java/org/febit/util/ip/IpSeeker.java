@@ -5,6 +5,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -12,10 +14,12 @@ import java.util.Arrays;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import jodd.io.StreamUtil;
+import org.febit.lang.ConcurrentLongMap;
 import org.febit.lang.Iter;
 import org.febit.lang.Tuple4;
 import org.febit.lang.iter.BaseIter;
 import org.febit.util.StringUtil;
+import org.febit.util.agent.FileReloadAgent;
 
 /**
  *
@@ -37,52 +41,106 @@ public class IpSeeker implements Iterable<IpSeeker.Location> {
         return create(Files.readAllBytes(path));
     }
 
+    /**
+     * Create a seeker backed by a read-only mapping of the given file.
+     *
+     * Note: the database is not copied into heap, processes could share it through page cache.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static IpSeeker createMapped(final Path path) throws IOException {
+        return create(BufferUtil.map(path));
+    }
+
+    /**
+     * Create a seeker backed by a read-only mapping of the given channel.
+     *
+     * @param channel
+     * @return
+     * @throws IOException
+     */
+    public static IpSeeker create(final FileChannel channel) throws IOException {
+        return create(BufferUtil.map(channel));
+    }
+
+    /**
+     * Create an agent, which reloads seeker in background when the file changed.
+     *
+     * Note: the file is read into heap, so it could be replaced in place safely.
+     *
+     * @param path
+     * @param interval interval of checking, unit: ms
+     * @return
+     */
+    public static FileReloadAgent<IpSeeker> createReloadAgent(final Path path, final long interval) {
+        return new FileReloadAgent<IpSeeker>(path, interval) {
+            @Override
+            protected IpSeeker create(Path path) throws IOException {
+                return IpSeeker.create(path);
+            }
+
+            @Override
+            protected boolean validate(IpSeeker seeker) {
+                return seeker != null && seeker.isValid();
+            }
+        };
+    }
+
     public static IpSeeker create(final InputStream in) throws IOException {
         return create(StreamUtil.readBytes(in));
     }
 
     public static IpSeeker create(final byte[] buffer) {
+        return create(ByteBuffer.wrap(buffer));
+    }
+
+    /**
+     * Create a seeker reading from the given buffer directly.
+     *
+     * @param buffer database, will not be modified
+     * @return
+     */
+    public static IpSeeker create(final ByteBuffer buffer) {
+
+        final ByteBuffer buf = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        buf.position(0);
+
+        if (buf.getInt(0) == CompactIpSeeker.MAGIC) {
+            return CompactIpSeeker.createCompact(buf);
+        }
 
         //Head
-        final ByteBuffer headBuf = ByteBuffer.wrap(buffer, 0, 4 * 258);
-        final int headPos = headBuf.getInt();
+        final int headPos = buf.getInt(0);
         // we have 256 segments, and last is the end position
         final int[] segmentPos = new int[257];
         for (int i = 0; i < 257; i++) {
-            segmentPos[i] = headBuf.getInt();
+            segmentPos[i] = buf.getInt((i + 1) << 2);
         }
 
         //Dict
-        final String dictRaw = new String(Arrays.copyOfRange(buffer, headPos, segmentPos[0]), UTF_8);
-        final String[] dict = StringUtil.splitc(dictRaw, '\001');
-
-        dict[0] = null; // "None" => null
-
-        //Segments
-        final int[][] segments = new int[256][];
-        final long[][] segmentIndexers = new long[256][];
-
-        for (int i = 0; i < 256; i++) {
-            int start = segmentPos[i];
-            int end = segmentPos[i + 1];
-
-            int len = (end - start) / 12; //(1 int + 1 long = 12 byte)
-
-            int[] segment = new int[len];
-            long[] segmentIndexer = new long[len];
-
-            ByteBuffer buf = ByteBuffer.wrap(buffer, start, end - start);
-
-            for (int j = 0; j < len; j++) {
-                segment[j] = buf.getInt();
-                segmentIndexer[j] = buf.getLong();
+        final String[] dict = resolveDict(buf, headPos, segmentPos[0]);
+
+        //Prefix index, optional, between head and dict
+        int[] prefixStarts = null;
+        if (headPos >= HEAD_SIZE + PREFIX_INDEX_SIZE) {
+            prefixStarts = new int[PREFIX_COUNT];
+            for (int i = 0; i < PREFIX_COUNT; i++) {
+                prefixStarts[i] = buf.getInt(HEAD_SIZE + (i << 2));
             }
-            segments[i] = segment;
-            segmentIndexers[i] = segmentIndexer;
         }
 
-        //XXX 校验
-        return new IpSeeker(dict, segments, segmentIndexers);
+        return new IpSeeker(null, dict, buf, segmentPos, prefixStarts);
+    }
+
+    /**
+     * Words joined by '\001', "None" at first is replaced by null.
+     */
+    protected static String[] resolveDict(final ByteBuffer buf, final int start, final int end) {
+        final String[] dict = StringUtil.splitc(BufferUtil.getString(buf, start, end - start, UTF_8), '\001');
+        dict[0] = null; // "None" => null
+        return dict;
     }
 
     public static Iter<Tuple4<Long, Long, Location, Location>> createCompareIter(String file1, String file2) throws IOException {
@@ -180,20 +238,302 @@ public class IpSeeker implements Iterable<IpSeeker.Location> {
         return (int) (ip & 0xFFFFFF);
     }
 
+    /**
+     * 1 int (little ip) + 1 long (dict indexes).
+     */
+    protected static final int ENTRY_SIZE = 12;
+
+    /**
+     * 1 int (dict start) + 257 int (segment positions).
+     */
+    protected static final int HEAD_SIZE = 4 * 258;
+
+    /**
+     * Count of /16 prefixes.
+     */
+    protected static final int PREFIX_COUNT = 0x10000;
+
+    /**
+     * Prefix index is stored after head when dict start is not lower than head plus this.
+     */
+    protected static final int PREFIX_INDEX_SIZE = 4 * PREFIX_COUNT;
+
     protected final String[] originDict;
     protected final String[] dict;
-    protected final int[][] segments;
-    protected final long[][] segmentIndexers;
+    /**
+     * Dict of each locale, the first is dict, all have same length with origin dict.
+     */
+    protected final String[][] dicts;
+    protected final ByteBuffer buffer;
+    protected final int[] segmentPos;
+    /**
+     * Shared areas of each distinct key, one for each locale in order of dicts, resolved on first hit.
+     */
+    protected final ConcurrentLongMap<Area[]> areas;
+    /**
+     * Index in segment of the first entry in each /16 prefix, null if not indexed.
+     */
+    protected final int[] prefixStarts;
 
+    /**
+     * @deprecated entries are read from a buffer, segments are copied into one
+     */
+    @Deprecated
     protected IpSeeker(String[] dict, int[][] segments, long[][] segmentIndexer) {
         this(null, dict, segments, segmentIndexer);
     }
 
+    /**
+     * @deprecated entries are read from a buffer, segments are copied into one
+     */
+    @Deprecated
     protected IpSeeker(String[] originDict, String[] dict, int[][] segments, long[][] segmentIndexer) {
-        this.originDict = originDict != null ? originDict : dict;
-        this.dict = dict;
-        this.segments = segments;
-        this.segmentIndexers = segmentIndexer;
+        this(originDict, dict, wrapSegments(segments, segmentIndexer), resolveSegmentPos(segments));
+    }
+
+    protected IpSeeker(String[] dict, ByteBuffer buffer, int[] segmentPos) {
+        this(null, dict, buffer, segmentPos);
+    }
+
+    protected IpSeeker(String[] originDict, String[] dict, ByteBuffer buffer, int[] segmentPos) {
+        this(originDict, dict, buffer, segmentPos, null);
+    }
+
+    protected IpSeeker(String[] originDict, String[] dict, ByteBuffer buffer, int[] segmentPos, int[] prefixStarts) {
+        this(originDict, new String[][]{dict}, buffer, segmentPos, prefixStarts,
+                new ConcurrentLongMap<Area[]>(dict.length));
+    }
+
+    protected IpSeeker(String[] originDict, String[][] dicts, ByteBuffer buffer, int[] segmentPos, int[] prefixStarts,
+            ConcurrentLongMap<Area[]> areas) {
+        this.originDict = originDict != null ? originDict : dicts[0];
+        this.dict = dicts[0];
+        this.dicts = dicts;
+        this.buffer = buffer;
+        this.segmentPos = segmentPos;
+        this.prefixStarts = prefixStarts;
+        this.areas = areas;
+    }
+
+    /**
+     * Positions of segments in the buffer from {@link #wrapSegments(int[][], long[][])}.
+     */
+    protected static int[] resolveSegmentPos(final int[][] segments) {
+        final int[] segmentPos = new int[257];
+        for (int i = 0; i < 256; i++) {
+            segmentPos[i + 1] = segmentPos[i] + segments[i].length * ENTRY_SIZE;
+        }
+        return segmentPos;
+    }
+
+    /**
+     * Entries of segments in a heap buffer, from position 0.
+     */
+    protected static ByteBuffer wrapSegments(final int[][] segments, final long[][] segmentIndexers) {
+        final int[] segmentPos = resolveSegmentPos(segments);
+        final ByteBuffer buf = ByteBuffer.allocate(segmentPos[256]);
+        for (int i = 0; i < 256; i++) {
+            final int[] segment = segments[i];
+            final long[] indexer = segmentIndexers[i];
+            for (int j = 0; j < segment.length; j++) {
+                buf.putInt(segment[j]);
+                buf.putLong(indexer[j]);
+            }
+        }
+        buf.clear();
+        return buf;
+    }
+
+    /**
+     * Get a seeker with /16 prefix index, which narrows every search to entries in the prefix.
+     *
+     * Note: the index costs 256KB of heap, returns this if already indexed.
+     *
+     * @return
+     */
+    public IpSeeker withPrefixIndex() {
+        if (this.prefixStarts != null) {
+            return this;
+        }
+        return new IpSeeker(originDict, dicts, buffer, segmentPos, resolvePrefixStarts(), areas);
+    }
+
+    public boolean isPrefixIndexed() {
+        return this.prefixStarts != null;
+    }
+
+    protected int[] resolvePrefixStarts() {
+        final int[] starts = new int[PREFIX_COUNT];
+        for (int segment = 0; segment < 256; segment++) {
+            int index = 0;
+            for (int sub = 0; sub < 256; sub++) {
+                while (getLittleIp(segment, index) < (sub << 16)) {
+                    index++;
+                }
+                starts[(segment << 8) | sub] = index;
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * Areas of given key, one for each locale.
+     */
+    protected Area[] resolveAreas(final long key) {
+        final String[][] myDicts = this.dicts;
+        final Area[] localeAreas = new Area[myDicts.length];
+        for (int i = 0; i < myDicts.length; i++) {
+            localeAreas[i] = createArea(key, myDicts[i]);
+        }
+        return localeAreas;
+    }
+
+    /**
+     * Areas for a seeker with given dicts and same ranges.
+     *
+     * Note: areas already resolved are reused for locales whose dict is unchanged.
+     *
+     * @param destDicts
+     * @return areas of this seeker if all dicts are unchanged
+     */
+    protected ConcurrentLongMap<Area[]> deriveAreas(final String[][] destDicts) {
+        final String[][] myDicts = this.dicts;
+        final int len = destDicts.length;
+        final boolean[] reused = new boolean[len];
+        boolean allReused = len == myDicts.length;
+        boolean anyReused = false;
+        for (int i = 0; i < len; i++) {
+            reused[i] = i < myDicts.length && destDicts[i] == myDicts[i];
+            allReused &= reused[i];
+            anyReused |= reused[i];
+        }
+        if (allReused) {
+            return this.areas;
+        }
+        final ConcurrentLongMap<Area[]> map = new ConcurrentLongMap<>(destDicts[0].length);
+        if (!anyReused) {
+            return map;
+        }
+        for (long key : this.areas.exportKeys()) {
+            final Area[] myAreas = this.areas.get(key);
+            final Area[] localeAreas = new Area[len];
+            for (int i = 0; i < len; i++) {
+                localeAreas[i] = reused[i] ? myAreas[i] : createArea(key, destDicts[i]);
+            }
+            map.putIfAbsent(key, localeAreas);
+        }
+        return map;
+    }
+
+    protected Area createArea(final long key) {
+        return createArea(key, this.dict);
+    }
+
+    protected static Area createArea(final long key, final String[] dict) {
+        return new Area(
+                dict[countryIndex(key)],
+                dict[ispIndex(key)],
+                dict[provinceIndex(key)],
+                dict[cityIndex(key)]
+        );
+    }
+
+    protected Area getArea(final long key, final int locale) {
+        Area[] localeAreas = this.areas.get(key);
+        if (localeAreas == null) {
+            localeAreas = this.areas.putIfAbsent(key, resolveAreas(key));
+        }
+        return localeAreas[locale];
+    }
+
+    protected Area getArea(final long key) {
+        return getArea(key, 0);
+    }
+
+    /**
+     * Check segments, every segment should be ascending and end with 0xFFFFFF.
+     *
+     * @return
+     */
+    public boolean isValid() {
+        final int[] pos = this.segmentPos;
+        if (pos.length != 257 || pos[256] > this.buffer.capacity()) {
+            return false;
+        }
+        for (int segment = 0; segment < 256; segment++) {
+            if (pos[segment] < 0
+                    || pos[segment] >= pos[segment + 1]
+                    || (pos[segment + 1] - pos[segment]) % ENTRY_SIZE != 0) {
+                return false;
+            }
+            int last = -1;
+            for (int i = 0, len = getSegmentSize(segment); i < len; i++) {
+                int little = getLittleIp(segment, i);
+                if (little <= last) {
+                    return false;
+                }
+                last = little;
+            }
+            if (last != 0xFFFFFF) {
+                return false;
+            }
+        }
+        return this.prefixStarts == null
+                || Arrays.equals(this.prefixStarts, resolvePrefixStarts());
+    }
+
+    protected int getSegmentSize(final int segment) {
+        return (this.segmentPos[segment + 1] - this.segmentPos[segment]) / ENTRY_SIZE;
+    }
+
+    protected int getLittleIp(final int segment, final int index) {
+        return this.buffer.getInt(this.segmentPos[segment] + index * ENTRY_SIZE);
+    }
+
+    protected long getKey(final int segment, final int index) {
+        return this.buffer.getLong(this.segmentPos[segment] + index * ENTRY_SIZE + 4);
+    }
+
+    /**
+     * Find index of the first entry in segment, which little ip not lower than given.
+     *
+     * Note: the last little ip of every segment is 0xFFFFFF.
+     *
+     * @param segment
+     * @param little
+     * @return
+     */
+    protected int findIndex(final int segment, final int little) {
+        final int[] starts = this.prefixStarts;
+        if (starts != null) {
+            final int prefix = (segment << 8) | (little >>> 16);
+            return findIndex(segment, little, starts[prefix],
+                    (prefix & 0xFF) == 0xFF ? getSegmentSize(segment) - 1 : starts[prefix + 1]);
+        }
+        return findIndex(segment, little, 0, getSegmentSize(segment) - 1);
+    }
+
+    /**
+     * Find index between start and end (inclusive).
+     *
+     * @param segment
+     * @param little
+     * @param start
+     * @param end
+     * @return
+     */
+    protected int findIndex(final int segment, final int little, int start, int end) {
+        final ByteBuffer buf = this.buffer;
+        final int base = this.segmentPos[segment];
+        while (start < end) {
+            int mid = (start + end) >>> 1;
+            if (buf.getInt(base + mid * ENTRY_SIZE) < little) {
+                start = mid + 1;
+            } else {
+                end = mid;
+            }
+        }
+        return start;
     }
 
     public String[] getDict() {
@@ -205,25 +545,321 @@ public class IpSeeker implements Iterable<IpSeeker.Location> {
     /**
      * Replace dict with given map.
      *
+     * Note: other locales are kept.
+     *
      * @param map
-     * @return count of replaced
+     * @return
      */
     public IpSeeker i18n(Map<String, String> map) {
+        final String[][] destDicts = this.dicts.clone();
+        destDicts[0] = translate(map);
+        return withDicts(destDicts);
+    }
 
-        //int replacedCount = 0;
+    /**
+     * Translate origin dict with given map, words not in map are kept.
+     *
+     * @param map
+     * @return dict in the same order with origin dict, could be used as a locale
+     */
+    public String[] translate(Map<String, String> map) {
         final String[] origin = this.originDict;
         final String[] destDict = new String[origin.length];
-
         for (int i = 0; i < origin.length; i++) {
             String word = map.get(origin[i]);
-            if (word != null) {
-                destDict[i] = word;
-                //replacedCount++;
-            } else {
-                destDict[i] = origin[i];
+            destDict[i] = word != null ? word : origin[i];
+        }
+        return destDict;
+    }
+
+    /**
+     * Get a seeker with additional locales, which share ranges with this seeker.
+     *
+     * Locales are numbered from 1 in the given order, 0 is the dict of this seeker. Words of a locale are resolved by
+     * index of the origin dict, so that locating with a locale never hashes any word.
+     *
+     * @see #getOriginDict()
+     * @see #translate(Map)
+     * @param localeDicts dicts in the same order with origin dict, null words fall back to the origin one
+     * @return
+     */
+    public IpSeeker withLocales(String[]... localeDicts) {
+        final String[] origin = this.originDict;
+        final String[][] destDicts = new String[localeDicts.length + 1][];
+        destDicts[0] = this.dict;
+        for (int i = 0; i < localeDicts.length; i++) {
+            final String[] localeDict = localeDicts[i];
+            if (localeDict.length != origin.length) {
+                throw new IllegalArgumentException(StringUtil.format("Locale {} has {} words, but expected {}",
+                        i + 1, localeDict.length, origin.length));
+            }
+            final String[] destDict = new String[origin.length];
+            for (int j = 1; j < origin.length; j++) {
+                destDict[j] = localeDict[j] != null ? localeDict[j] : origin[j];
             }
+            destDicts[i + 1] = destDict;
         }
-        return new IpSeeker(originDict, destDict, segments, segmentIndexers);
+        return withDicts(destDicts);
+    }
+
+    /**
+     * Get a seeker with same ranges and the given dicts.
+     *
+     * @param destDicts the first is the default dict
+     * @return
+     */
+    protected IpSeeker withDicts(String[][] destDicts) {
+        return new IpSeeker(originDict, destDicts, buffer, segmentPos, prefixStarts, deriveAreas(destDicts));
+    }
+
+    /**
+     * Get origin dict, words in locale dicts should be in the same order.
+     *
+     * @return
+     */
+    public String[] getOriginDict() {
+        return this.originDict.clone();
+    }
+
+    /**
+     * Count of locales, includes the default one.
+     *
+     * @return
+     */
+    public int getLocaleCount() {
+        return this.dicts.length;
+    }
+
+    /**
+     * Get word in dict by index.
+     *
+     * @param index
+     * @return null if None
+     */
+    public String getWord(final int index) {
+        return this.dict[index];
+    }
+
+    /**
+     * Get word in dict of given locale by index.
+     *
+     * @param index
+     * @param locale
+     * @return null if None
+     */
+    public String getWord(final int index, final int locale) {
+        return this.dicts[locale][index];
+    }
+
+    /**
+     * Locate given ip, without allocating.
+     *
+     * @see #countryIndex(long)
+     * @see #ispIndex(long)
+     * @see #provinceIndex(long)
+     * @see #cityIndex(long)
+     * @param ipv4
+     * @return packed indexes of country, isp, province and city in dict, 16 bits each
+     */
+    public long locateKey(final int ipv4) {
+        final int segment = (ipv4 >>> 24) & 0xFF;
+        return getKey(segment, findIndex(segment, ipv4 & 0xFFFFFF));
+    }
+
+    /**
+     * Locate given ip, without allocating.
+     *
+     * @see #locateKey(int)
+     * @param ipv4
+     * @return packed indexes in dict
+     */
+    public long locateKey(final long ipv4) {
+        return locateKey((int) ipv4);
+    }
+
+    /**
+     * Locate given ips, without allocating.
+     *
+     * Note: ascending ips are located by walking entries forward.
+     *
+     * @see #locateKey(int)
+     * @param ips
+     * @param outKeys packed indexes in dict, in same order with ips
+     */
+    public void locateAll(final int[] ips, final long[] outKeys) {
+        final int len = ips.length;
+        if (outKeys.length < len) {
+            throw new IllegalArgumentException("outKeys is shorter than ips");
+        }
+        if (isAscending(ips)) {
+            int segment = -1;
+            int index = 0;
+            int size = 0;
+            for (int i = 0; i < len; i++) {
+                final int ip = ips[i];
+                final int little = ip & 0xFFFFFF;
+                if (segment != ((ip >>> 24) & 0xFF)) {
+                    segment = (ip >>> 24) & 0xFF;
+                    size = getSegmentSize(segment);
+                    index = findIndex(segment, little);
+                } else if (getLittleIp(segment, index) < little) {
+                    index = gallopIndex(segment, little, index, size);
+                }
+                outKeys[i] = getKey(segment, index);
+            }
+            return;
+        }
+        for (int i = 0; i < len; i++) {
+            outKeys[i] = locateKey(ips[i]);
+        }
+    }
+
+    /**
+     * Locate given ips, without allocating.
+     *
+     * @see #locateAll(int[], long[])
+     * @param ips
+     * @param outKeys
+     */
+    public void locateAll(final long[] ips, final long[] outKeys) {
+        final int len = ips.length;
+        if (outKeys.length < len) {
+            throw new IllegalArgumentException("outKeys is shorter than ips");
+        }
+        if (isAscending(ips)) {
+            int segment = -1;
+            int index = 0;
+            int size = 0;
+            for (int i = 0; i < len; i++) {
+                final long ip = ips[i];
+                final int little = (int) (ip & 0xFFFFFF);
+                if (segment != (int) ((ip >>> 24) & 0xFF)) {
+                    segment = (int) ((ip >>> 24) & 0xFF);
+                    size = getSegmentSize(segment);
+                    index = findIndex(segment, little);
+                } else if (getLittleIp(segment, index) < little) {
+                    index = gallopIndex(segment, little, index, size);
+                }
+                outKeys[i] = getKey(segment, index);
+            }
+            return;
+        }
+        for (int i = 0; i < len; i++) {
+            outKeys[i] = locateKey(ips[i]);
+        }
+    }
+
+    /**
+     * Find index after the given one, by doubling steps then binary search.
+     *
+     * @param segment
+     * @param little
+     * @param index known lower than little
+     * @param size
+     * @return
+     */
+    protected int gallopIndex(final int segment, final int little, int index, final int size) {
+        int step = 1;
+        int next = index + 1;
+        while (next < size - 1 && getLittleIp(segment, next) < little) {
+            index = next;
+            step <<= 1;
+            next = Math.min(index + step, size - 1);
+        }
+        return findIndex(segment, little, index + 1, next);
+    }
+
+    private static boolean isAscending(final int[] ips) {
+        for (int i = 1; i < ips.length; i++) {
+            if ((ips[i - 1] ^ Integer.MIN_VALUE) > (ips[i] ^ Integer.MIN_VALUE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAscending(final long[] ips) {
+        for (int i = 1; i < ips.length; i++) {
+            if (ips[i - 1] > ips[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static int countryIndex(final long key) {
+        return (int) ((key >>> 48) & 0xFFFF);
+    }
+
+    public static int ispIndex(final long key) {
+        return (int) ((key >>> 32) & 0xFFFF);
+    }
+
+    public static int provinceIndex(final long key) {
+        return (int) ((key >>> 16) & 0xFFFF);
+    }
+
+    public static int cityIndex(final long key) {
+        return (int) (key & 0xFFFF);
+    }
+
+    /**
+     * Locate given ip, returns the area shared by all ranges with same key.
+     *
+     * @param ipv4
+     * @return
+     */
+    public Area locateArea(final int ipv4) {
+        return getArea(locateKey(ipv4));
+    }
+
+    public Area locateArea(final long ipv4) {
+        return locateArea((int) ipv4);
+    }
+
+    public Area locateArea(final String ipv4) {
+        return locateArea(IpUtil.parseInt(ipv4));
+    }
+
+    /**
+     * Locate given ip, in given locale.
+     *
+     * Note: areas are shared by key in each locale.
+     *
+     * @see #withLocales(String[]...)
+     * @param ipv4
+     * @param locale
+     * @return
+     */
+    public Area locateArea(final int ipv4, final int locale) {
+        return getArea(locateKey(ipv4), locale);
+    }
+
+    /**
+     * Get start of the range which contains given ip.
+     *
+     * @param ipv4
+     * @return
+     */
+    public long locateIpFrom(final int ipv4) {
+        final int segment = (ipv4 >>> 24) & 0xFF;
+        final int index = findIndex(segment, ipv4 & 0xFFFFFF);
+        final long segmentHead = ((long) (segment)) << 24;
+        return index != 0
+                ? (segmentHead | getLittleIp(segment, index - 1)) + 1
+                : segmentHead;
+    }
+
+    /**
+     * Get end of the range which contains given ip.
+     *
+     * @param ipv4
+     * @return
+     */
+    public long locateIpTo(final int ipv4) {
+        final int segment = (ipv4 >>> 24) & 0xFF;
+        final int index = findIndex(segment, ipv4 & 0xFFFFFF);
+        return (((long) (segment)) << 24) | getLittleIp(segment, index);
     }
 
     public Location locate(String ipv4) {
@@ -242,33 +878,119 @@ public class IpSeeker implements Iterable<IpSeeker.Location> {
         return locate(segment, little);
     }
 
+    /**
+     * Locate given ip, in given locale.
+     *
+     * @see #withLocales(String[]...)
+     * @param ipv4
+     * @param locale index of locale, 0 is the default
+     * @return
+     */
+    public Location locateLocalized(String ipv4, int locale) {
+        return locateLocalized(IpUtil.parseInt(ipv4), locale);
+    }
+
+    public Location locateLocalized(int ipv4, int locale) {
+        final int segment = (ipv4 >>> 24) & 0xFF;
+        return createLocationByIndex(segment, findIndex(segment, ipv4 & 0xFFFFFF), locale);
+    }
+
+    public Location locateLocalized(long ipv4, int locale) {
+        return locateLocalized((int) ipv4, locale);
+    }
+
     protected Location locate(final int segment, final int little) {
-        int index = findIndex(segments[segment], little);
+        int index = findIndex(segment, little);
         return createLocationByIndex(segment, index);
     }
 
     protected Location createLocationByIndex(final int segment, final int index) {
-        long key = segmentIndexers[segment][index];
+        return createLocationByIndex(segment, index, 0);
+    }
+
+    protected Location createLocationByIndex(final int segment, final int index, final int locale) {
+        long key = getKey(segment, index);
 
         long segmentHead = ((long) (segment)) << 24;
-        long ipTo = segmentHead | segments[segment][index];
+        long ipTo = segmentHead | getLittleIp(segment, index);
         long ipFrom;
         if (index != 0) {
-            ipFrom = (segmentHead | segments[segment][index - 1]) + 1;
+            ipFrom = (segmentHead | getLittleIp(segment, index - 1)) + 1;
         } else {
             ipFrom = segmentHead;
         }
-        if (key == 0L) {
-            return new Location(ipFrom, ipTo, null, null, null, null);
+        return new Location(ipFrom, ipTo, getArea(key, locale));
+    }
+
+    /**
+     * Create a cursor over all ranges, without allocating per range.
+     *
+     * @return
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Primitive cursor over ranges, in ascending order.
+     *
+     * Note: ranges are split at every segment.
+     */
+    public final class Cursor {
+
+        private int segment = 0;
+        private int index = -1;
+        private long from;
+        private long to = -1L;
+        private long key;
+
+        private Cursor() {
+        }
+
+        /**
+         * Move to the next range.
+         *
+         * @return false if no more
+         */
+        public boolean next() {
+            if (segment > 255) {
+                return false;
+            }
+            if (++index >= getSegmentSize(segment)) {
+                index = 0;
+                if (++segment > 255) {
+                    return false;
+                }
+            }
+            from = to + 1;
+            to = (((long) segment) << 24) | getLittleIp(segment, index);
+            key = IpSeeker.this.getKey(segment, index);
+            return true;
+        }
+
+        public long getFrom() {
+            return from;
+        }
+
+        public long getTo() {
+            return to;
+        }
+
+        /**
+         * @see IpSeeker#locateKey(int)
+         * @return packed indexes in dict
+         */
+        public long getKey() {
+            return key;
+        }
+
+        public Area getArea() {
+            return IpSeeker.this.getArea(key);
+        }
+
+        public IpSeeker getSeeker() {
+            return IpSeeker.this;
         }
-        return new Location(
-                ipFrom,
-                ipTo,
-                dict[(int) ((key >>> 48) & 0xFFFF)],
-                dict[(int) ((key >>> 32) & 0xFFFF)],
-                dict[(int) ((key >>> 16) & 0xFFFF)],
-                dict[(int) ((key) & 0xFFFF)]
-        );
     }
 
     @Override
@@ -295,7 +1017,7 @@ public class IpSeeker implements Iterable<IpSeeker.Location> {
                     return;
                 }
 
-                if (index >= IpSeeker.this.segments[segment].length) {
+                if (index >= IpSeeker.this.getSegmentSize(segment)) {
                     segment++;
                     index = 0;
                 }
@@ -332,24 +1054,75 @@ public class IpSeeker implements Iterable<IpSeeker.Location> {
 
     }
 
-    public static final class Location {
+    /**
+     * Country, isp, province and city.
+     *
+     * Note: areas from one seeker are shared by key, could be compared by identity.
+     */
+    public static final class Area {
 
-        private final long ipFrom;
-        private final long ipTo;
         private final String country;
         private final String isp;
         private final String province;
         private final String city;
 
-        public Location(long ipFrom, long ipTo, String country, String isp, String province, String city) {
-            this.ipFrom = ipFrom;
-            this.ipTo = ipTo;
+        public Area(String country, String isp, String province, String city) {
             this.country = country;
             this.isp = isp;
             this.province = province;
             this.city = city;
         }
 
+        /**
+         * 国家
+         */
+        public String getCountry() {
+            return country;
+        }
+
+        /**
+         * 省
+         */
+        public String getProvince() {
+            return province;
+        }
+
+        /**
+         * 市
+         */
+        public String getCity() {
+            return city;
+        }
+
+        /**
+         * 运营商
+         */
+        public String getIsp() {
+            return isp;
+        }
+
+        @Override
+        public String toString() {
+            return this.country + ' ' + this.province + ' ' + this.city + ' ' + this.isp;
+        }
+    }
+
+    public static final class Location {
+
+        private final long ipFrom;
+        private final long ipTo;
+        private final Area area;
+
+        public Location(long ipFrom, long ipTo, String country, String isp, String province, String city) {
+            this(ipFrom, ipTo, new Area(country, isp, province, city));
+        }
+
+        public Location(long ipFrom, long ipTo, Area area) {
+            this.ipFrom = ipFrom;
+            this.ipTo = ipTo;
+            this.area = area;
+        }
+
         public long getIpFrom() {
             return ipFrom;
         }
@@ -366,37 +1139,41 @@ public class IpSeeker implements Iterable<IpSeeker.Location> {
             return IpUtil.toString(this.ipTo);
         }
 
+        public Area getArea() {
+            return area;
+        }
+
         /**
          * 国家
          */
         public String getCountry() {
-            return country;
+            return area.country;
         }
 
         /**
          * 省
          */
         public String getProvince() {
-            return province;
+            return area.province;
         }
 
         /**
          * 市
          */
         public String getCity() {
-            return city;
+            return area.city;
         }
 
         /**
          * 运营商
          */
         public String getIsp() {
-            return isp;
+            return area.isp;
         }
 
         @Override
         public String toString() {
-            return this.country + ' ' + this.province + ' ' + this.city + ' ' + this.isp;
+            return area.toString();
         }
     }
 
@@ -0,0 +1,462 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.ip;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Immutable set of IPv4, stored as sorted, disjoint and not adjacent ranges.
+ *
+ * @author zqq90
+ */
+public class IpSet {
+
+    public static final IpSet EMPTY = new IpSet(new long[0], new long[0]);
+    public static final IpSet ALL = new IpSet(new long[]{0L}, new long[]{IpUtil.IP_MAX});
+
+    protected static final byte PREFIX_EMPTY = 0;
+    protected static final byte PREFIX_FULL = 1;
+    protected static final byte PREFIX_PARTIAL = 2;
+
+    /**
+     * inclusive.
+     */
+    protected final long[] starts;
+    /**
+     * inclusive.
+     */
+    protected final long[] ends;
+
+    /**
+     * State of each /16, null if not indexed.
+     */
+    protected final byte[] prefixStates;
+    /**
+     * Index of the first range not ending before each /16, null if not indexed.
+     */
+    protected final int[] prefixIndexes;
+    /**
+     * Bitmap of partial /16 with many ranges, null if no /16 has one.
+     */
+    protected final long[][] bitmaps;
+
+    protected IpSet(long[] starts, long[] ends) {
+        this(starts, ends, null, null, null);
+    }
+
+    protected IpSet(long[] starts, long[] ends, byte[] prefixStates, int[] prefixIndexes, long[][] bitmaps) {
+        this.starts = starts;
+        this.ends = ends;
+        this.prefixStates = prefixStates;
+        this.prefixIndexes = prefixIndexes;
+        this.bitmaps = bitmaps;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static IpSet of(long from, long to) {
+        return builder().add(from, to).build();
+    }
+
+    /**
+     * Create set from CIDRs, like "10.0.0.0/8", single ip is also supported.
+     *
+     * @param cidrs
+     * @return
+     */
+    public static IpSet ofCidrs(String... cidrs) {
+        return builder().addCidrs(cidrs).build();
+    }
+
+    public static IpSet ofCidrs(Iterable<String> cidrs) {
+        Builder builder = builder();
+        for (String cidr : cidrs) {
+            builder.addCidr(cidr);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Create set from white ranges of the given seeker.
+     *
+     * @param seeker
+     * @return
+     */
+    public static IpSet of(IpBlankSeeker seeker) {
+        final int count = seeker._size >> 1;
+        final long[] starts = new long[count];
+        final long[] ends = new long[count];
+        for (int i = 0; i < count; i++) {
+            // white ranges are (b[2i], b[2i + 1]]
+            starts[i] = seeker.getBoundary(i << 1) + 1;
+            ends[i] = seeker.getBoundary((i << 1) + 1);
+        }
+        return builder().addAll(starts, ends, count).build();
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    public boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    public long getStart(int index) {
+        return starts[index];
+    }
+
+    public long getEnd(int index) {
+        return ends[index];
+    }
+
+    /**
+     * Count of ips.
+     *
+     * @return
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < starts.length; i++) {
+            count += ends[i] - starts[i] + 1;
+        }
+        return count;
+    }
+
+    public boolean contains(String ipv4) {
+        long ip = IpUtil.parseLong(ipv4);
+        return ip >= 0 && contains(ip);
+    }
+
+    public boolean contains(int ipv4) {
+        return contains(IpUtil.int2long(ipv4));
+    }
+
+    public boolean contains(long ipv4) {
+        final byte[] states = this.prefixStates;
+        if (states != null) {
+            final int prefix = (int) (ipv4 >>> 16);
+            final byte state = states[prefix];
+            if (state != PREFIX_PARTIAL) {
+                return state == PREFIX_FULL;
+            }
+            final long[][] maps = this.bitmaps;
+            if (maps != null && maps[prefix] != null) {
+                final int offset = (int) (ipv4 & 0xFFFF);
+                return (maps[prefix][offset >>> 6] & (1L << offset)) != 0;
+            }
+            // only ranges of this /16, the last one could be the first of next /16, or end before the ip
+            final int last = starts.length - 1;
+            final int index = findIndex(ipv4, this.prefixIndexes[prefix],
+                    prefix == 0xFFFF ? last : Math.min(this.prefixIndexes[prefix + 1], last));
+            return starts[index] <= ipv4 && ends[index] >= ipv4;
+        }
+        final int index = findIndex(ipv4);
+        return index >= 0 && starts[index] <= ipv4;
+    }
+
+    /**
+     * Find index of the first range which end not lower than given ip.
+     *
+     * @return -1 if not found
+     */
+    protected int findIndex(final long ipv4) {
+        final int end = this.ends.length - 1;
+        if (end < 0 || this.ends[end] < ipv4) {
+            return -1;
+        }
+        return findIndex(ipv4, 0, end);
+    }
+
+    /**
+     * Find index of the first range which end not lower than given ip, in given indexes.
+     *
+     * @param start
+     * @param end inclusive
+     * @return end if no range in given indexes ends not lower than given ip
+     */
+    protected int findIndex(final long ipv4, int start, int end) {
+        final long[] ends = this.ends;
+        while (start < end) {
+            int mid = (start + end) >>> 1;
+            if (ends[mid] < ipv4) {
+                start = mid + 1;
+            } else {
+                end = mid;
+            }
+        }
+        return start;
+    }
+
+    public IpSet union(IpSet other) {
+        final int len1 = this.starts.length;
+        final int len2 = other.starts.length;
+        final long[] resultStarts = new long[len1 + len2];
+        final long[] resultEnds = new long[len1 + len2];
+        int count = 0;
+        for (int i = 0, j = 0; i < len1 || j < len2;) {
+            final long start;
+            final long end;
+            if (j >= len2 || (i < len1 && this.starts[i] <= other.starts[j])) {
+                start = this.starts[i];
+                end = this.ends[i++];
+            } else {
+                start = other.starts[j];
+                end = other.ends[j++];
+            }
+            if (count != 0 && start <= resultEnds[count - 1] + 1) {
+                resultEnds[count - 1] = Math.max(resultEnds[count - 1], end);
+            } else {
+                resultStarts[count] = start;
+                resultEnds[count++] = end;
+            }
+        }
+        return create(resultStarts, resultEnds, count);
+    }
+
+    public IpSet intersect(IpSet other) {
+        final int len1 = this.starts.length;
+        final int len2 = other.starts.length;
+        final long[] resultStarts = new long[len1 + len2];
+        final long[] resultEnds = new long[len1 + len2];
+        int count = 0;
+        for (int i = 0, j = 0; i < len1 && j < len2;) {
+            final long start = Math.max(this.starts[i], other.starts[j]);
+            final long end = Math.min(this.ends[i], other.ends[j]);
+            if (start <= end) {
+                resultStarts[count] = start;
+                resultEnds[count++] = end;
+            }
+            if (this.ends[i] < other.ends[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return create(resultStarts, resultEnds, count);
+    }
+
+    public IpSet difference(IpSet other) {
+        return intersect(other.complement());
+    }
+
+    public IpSet complement() {
+        final int len = this.starts.length;
+        final long[] resultStarts = new long[len + 1];
+        final long[] resultEnds = new long[len + 1];
+        int count = 0;
+        long next = 0L;
+        for (int i = 0; i < len; i++) {
+            if (starts[i] > next) {
+                resultStarts[count] = next;
+                resultEnds[count++] = starts[i] - 1;
+            }
+            next = ends[i] + 1;
+        }
+        if (next <= IpUtil.IP_MAX) {
+            resultStarts[count] = next;
+            resultEnds[count++] = IpUtil.IP_MAX;
+        }
+        return create(resultStarts, resultEnds, count);
+    }
+
+    protected static IpSet create(long[] starts, long[] ends, int count) {
+        if (count == 0) {
+            return EMPTY;
+        }
+        if (count != starts.length) {
+            starts = Arrays.copyOf(starts, count);
+            ends = Arrays.copyOf(ends, count);
+        }
+        return new IpSet(starts, ends);
+    }
+
+    /**
+     * Get a set with /16 prefix index, empty or full /16s are answered directly.
+     *
+     * @param minRangesForBitmap partial /16 with at least this many ranges gets a 8KB bitmap, O(1) membership
+     * @return
+     */
+    public IpSet withPrefixIndex(final int minRangesForBitmap) {
+        final byte[] states = new byte[0x10000];
+        final int[] indexes = new int[0x10000];
+        long[][] maps = null;
+        final int len = starts.length;
+        int index = 0;
+        for (int prefix = 0; prefix < 0x10000; prefix++) {
+            final long prefixStart = ((long) prefix) << 16;
+            final long prefixEnd = prefixStart | 0xFFFF;
+            while (index < len && ends[index] < prefixStart) {
+                index++;
+            }
+            indexes[prefix] = index;
+            if (index >= len || starts[index] > prefixEnd) {
+                states[prefix] = PREFIX_EMPTY;
+                continue;
+            }
+            if (starts[index] <= prefixStart && ends[index] >= prefixEnd) {
+                states[prefix] = PREFIX_FULL;
+                continue;
+            }
+            states[prefix] = PREFIX_PARTIAL;
+            int last = index;
+            while (last + 1 < len && starts[last + 1] <= prefixEnd) {
+                last++;
+            }
+            if (last - index + 1 >= minRangesForBitmap) {
+                final long[] bitmap = new long[0x10000 >>> 6];
+                for (int i = index; i <= last; i++) {
+                    final int from = (int) (Math.max(starts[i], prefixStart) - prefixStart);
+                    final int to = (int) (Math.min(ends[i], prefixEnd) - prefixStart);
+                    for (int bit = from; bit <= to; bit++) {
+                        bitmap[bit >>> 6] |= 1L << bit;
+                    }
+                }
+                if (maps == null) {
+                    maps = new long[0x10000][];
+                }
+                maps[prefix] = bitmap;
+            }
+        }
+        return new IpSet(starts, ends, states, indexes, maps);
+    }
+
+    public boolean isPrefixIndexed() {
+        return prefixStates != null;
+    }
+
+    /**
+     * Serialize to the format of {@link IpBlankSeeker}.
+     *
+     * Note: white ranges in that format exclude the start boundary, so 0.0.0.0 is always excluded, and a range of
+     * only 0.0.0.0 is dropped.
+     *
+     * @return
+     */
+    public byte[] toBytes() {
+        final int len = starts.length;
+        // only the first range could be 0.0.0.0 alone
+        final int first = len != 0 && ends[0] == 0 ? 1 : 0;
+        final ByteBuffer buffer = ByteBuffer.allocate(4 + ((len - first) << 3));
+        buffer.putInt((len - first) << 1);
+        for (int i = first; i < len; i++) {
+            // white ranges are (b[2i], b[2i + 1]]
+            buffer.putInt((int) (starts[i] == 0 ? 0 : starts[i] - 1));
+            buffer.putInt((int) ends[i]);
+        }
+        return buffer.array();
+    }
+
+    public IpBlankSeeker toBlankSeeker() {
+        return IpBlankSeeker.create(toBytes());
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < starts.length; i++) {
+            if (i != 0) {
+                buf.append(',');
+            }
+            buf.append(IpUtil.toString(starts[i]));
+            if (starts[i] != ends[i]) {
+                buf.append('-').append(IpUtil.toString(ends[i]));
+            }
+        }
+        return buf.toString();
+    }
+
+    public static class Builder {
+
+        protected long[] starts = new long[16];
+        protected long[] ends = new long[16];
+        protected int count;
+
+        public Builder add(long from, long to) {
+            if (from < 0 || to > IpUtil.IP_MAX || from > to) {
+                throw new IllegalArgumentException("Illegal range: " + from + " - " + to);
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count << 1);
+                ends = Arrays.copyOf(ends, count << 1);
+            }
+            starts[count] = from;
+            ends[count++] = to;
+            return this;
+        }
+
+        public Builder add(String ipv4) {
+            long ip = IpUtil.parseLong(ipv4);
+            if (ip < 0) {
+                throw new IllegalArgumentException("Not a ip: " + ipv4);
+            }
+            return add(ip, ip);
+        }
+
+        /**
+         * Add CIDR like "10.0.0.0/8", single ip is also supported.
+         *
+         * @param cidr
+         * @return
+         */
+        public Builder addCidr(String cidr) {
+            cidr = cidr.trim();
+            final int split = cidr.indexOf('/');
+            if (split < 0) {
+                return add(cidr);
+            }
+            final long head = IpUtil.parseLong(cidr.substring(0, split));
+            final int mark;
+            try {
+                mark = Integer.parseInt(cidr.substring(split + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a CIDR: " + cidr, e);
+            }
+            if (head < 0 || mark < 0 || mark > 32) {
+                throw new IllegalArgumentException("Not a CIDR: " + cidr);
+            }
+            return add(IpUtil.getSegmentStart(head, mark), IpUtil.getSegmentEnd(head, mark));
+        }
+
+        public Builder addCidrs(String... cidrs) {
+            for (String cidr : cidrs) {
+                addCidr(cidr);
+            }
+            return this;
+        }
+
+        protected Builder addAll(long[] starts, long[] ends, int count) {
+            for (int i = 0; i < count; i++) {
+                add(starts[i], ends[i]);
+            }
+            return this;
+        }
+
+        public IpSet build() {
+            final int len = this.count;
+            // sort by start, start and end are both 32 bits
+            final long[] packed = new long[len];
+            for (int i = 0; i < len; i++) {
+                packed[i] = ((starts[i] << 32) | ends[i]) ^ Long.MIN_VALUE;
+            }
+            Arrays.sort(packed);
+            final long[] resultStarts = new long[len];
+            final long[] resultEnds = new long[len];
+            int size = 0;
+            for (int i = 0; i < len; i++) {
+                final long range = packed[i] ^ Long.MIN_VALUE;
+                final long start = range >>> 32;
+                final long end = range & IpUtil.IP_MAX;
+                if (size != 0 && start <= resultEnds[size - 1] + 1) {
+                    resultEnds[size - 1] = Math.max(resultEnds[size - 1], end);
+                } else {
+                    resultStarts[size] = start;
+                    resultEnds[size++] = end;
+                }
+            }
+            return create(resultStarts, resultEnds, size);
+        }
+    }
+}
@@ -1,7 +1,11 @@
 // Copyright (c) 2013-present, febit.org. All Rights Reserved.
 package org.febit.util.ip;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.util.regex.Pattern;
+import org.febit.util.PrintAppendable;
 
 /**
  *
@@ -11,6 +15,18 @@ public class IpUtil {
 
     public static final long IP_MAX = 0xFFFFFFFFL;
     public static final int IP_MAX_INT = 0xFFFFFFFF;
+    /**
+     * Max length of dotted IPv4.
+     */
+    public static final int IPV4_MAX_LENGTH = 15;
+    private static final char[][] OCTETS = new char[256][];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            OCTETS[i] = Integer.toString(i).toCharArray();
+        }
+    }
+
     protected static Pattern REGX_IP = Pattern.compile("^(\\d|[1-9]\\d|1\\d{2}|2[0-4]\\d|25[0-5])(\\.(\\d|[1-9]\\d|1\\d{2}|2[0-4]\\d|25[0-5])){3}$");
 
     public static long parseLong(final String ip) {
@@ -32,17 +48,11 @@ public class IpUtil {
             return -1L;
         }
 
-        char[] chars = new char[length + 1];
-        chars[length] = '.';
-        ipv4.getChars(0, length, chars, 0);
-
-        int i = 0;
-
         int pieceCount = 0;
         long result = 0;
         int piece = 0;
-        while (i <= length) {
-            char c = chars[i++];
+        for (int i = 0; i <= length; i++) {
+            final char c = i < length ? ipv4.charAt(i) : '.';
             switch (c) {
                 case '0':
                 case '1':
@@ -74,15 +84,338 @@ public class IpUtil {
         return result;
     }
 
+    /**
+     * Parse dotted IPv4, strict, without allocating.
+     *
+     * @param chars
+     * @return -1L if not a ip.
+     */
+    public static long parseIpv4(final CharSequence chars) {
+        if (chars == null) {
+            return -1L;
+        }
+        return parseIpv4(chars, 0, chars.length());
+    }
+
+    /**
+     * Parse dotted IPv4 in given range, strict, without allocating.
+     *
+     * Each piece has 1-3 digits without leading zero, and not greater than 255.
+     *
+     * @param chars
+     * @param start
+     * @param end exclusive
+     * @return -1L if not a ip.
+     */
+    public static long parseIpv4(final CharSequence chars, final int start, final int end) {
+        if (end - start < 7 || end - start > 15) {
+            return -1L;
+        }
+        long state = 0L;
+        for (int i = start; i < end; i++) {
+            if ((state = nextIpv4State(state, chars.charAt(i))) < 0) {
+                return -1L;
+            }
+        }
+        return finishIpv4State(state);
+    }
+
+    /**
+     * Parse dotted IPv4 in given range, strict, without allocating.
+     *
+     * @param chars
+     * @param start
+     * @param end exclusive
+     * @return -1L if not a ip.
+     */
+    public static long parseIpv4(final char[] chars, final int start, final int end) {
+        if (end - start < 7 || end - start > 15) {
+            return -1L;
+        }
+        long state = 0L;
+        for (int i = start; i < end; i++) {
+            if ((state = nextIpv4State(state, chars[i])) < 0) {
+                return -1L;
+            }
+        }
+        return finishIpv4State(state);
+    }
+
+    /**
+     * Parse dotted IPv4 in given range of ASCII bytes, strict, without allocating.
+     *
+     * @param bytes
+     * @param start
+     * @param end exclusive
+     * @return -1L if not a ip.
+     */
+    public static long parseIpv4(final byte[] bytes, final int start, final int end) {
+        if (end - start < 7 || end - start > 15) {
+            return -1L;
+        }
+        long state = 0L;
+        for (int i = start; i < end; i++) {
+            if ((state = nextIpv4State(state, bytes[i])) < 0) {
+                return -1L;
+            }
+        }
+        return finishIpv4State(state);
+    }
+
+    /**
+     * Parse dotted IPv4 in given range of ASCII bytes, strict, without allocating.
+     *
+     * @param buffer position of buffer is not changed
+     * @param start absolute index
+     * @param end absolute index, exclusive
+     * @return -1L if not a ip.
+     */
+    public static long parseIpv4(final ByteBuffer buffer, final int start, final int end) {
+        if (end - start < 7 || end - start > 15) {
+            return -1L;
+        }
+        long state = 0L;
+        for (int i = start; i < end; i++) {
+            if ((state = nextIpv4State(state, buffer.get(i))) < 0) {
+                return -1L;
+            }
+        }
+        return finishIpv4State(state);
+    }
+
+    /*
+     * State of parsing IPv4, packed in a long:
+     *   bits 0-31: finished pieces, bits 32-39: current piece,
+     *   bits 40-41: digits of current piece, bits 42-44: count of finished pieces.
+     */
+    private static long nextIpv4State(final long state, final int c) {
+        final int digits = (int) (state >>> 40) & 0x3;
+        final int piece = (int) (state >>> 32) & 0xFF;
+        if (c >= '0' && c <= '9') {
+            final int next = piece * 10 + c - '0';
+            if (next > 0xFF
+                    || digits == 3
+                    || (digits != 0 && piece == 0)) {
+                return -1L;
+            }
+            return (state & ~0x3FF00000000L) | (((long) digits + 1) << 40) | (((long) next) << 32);
+        }
+        if (c != '.' || digits == 0) {
+            return -1L;
+        }
+        final long count = (state >>> 42) + 1;
+        if (count > 3) {
+            return -1L;
+        }
+        return (count << 42) | (((state << 8) | piece) & IP_MAX);
+    }
+
+    private static long finishIpv4State(final long state) {
+        if ((state >>> 42) != 3 || ((state >>> 40) & 0x3) == 0) {
+            return -1L;
+        }
+        return ((state << 8) | ((state >>> 32) & 0xFF)) & IP_MAX;
+    }
+
+    public static boolean isIpv6(final String ipv6) {
+        return parseIpv6(ipv6, new long[2]);
+    }
+
+    /**
+     * Parse IPv6, without allocating.
+     *
+     * Supports "::" and IPv4 suffix like "::ffff:1.2.3.4", zone index is not supported.
+     *
+     * @param ipv6
+     * @param out high 64 bits will be set to out[0], and low to out[1]
+     * @return false if not a ip, and out will not be changed
+     */
+    public static boolean parseIpv6(final CharSequence ipv6, final long[] out) {
+        if (ipv6 == null) {
+            return false;
+        }
+        final int len = ipv6.length();
+        if (len < 2 || len > 45) {
+            return false;
+        }
+        // groups before and after "::"
+        long headHigh = 0;
+        long headLow = 0;
+        long tailHigh = 0;
+        long tailLow = 0;
+        int headCount = 0;
+        int tailCount = 0;
+        boolean compressed = false;
+
+        int i = 0;
+        if (ipv6.charAt(0) == ':') {
+            if (ipv6.charAt(1) != ':') {
+                return false;
+            }
+            compressed = true;
+            i = 2;
+        }
+        while (i < len) {
+            final int start = i;
+            int group = 0;
+            int digit;
+            while (i < len && i - start < 5 && (digit = Character.digit(ipv6.charAt(i), 16)) >= 0) {
+                group = (group << 4) | digit;
+                i++;
+            }
+            final int groupCount;
+            if (i < len && ipv6.charAt(i) == '.') {
+                // IPv4 suffix
+                final long ipv4 = parseIpv4(ipv6, start, len);
+                if (ipv4 < 0) {
+                    return false;
+                }
+                group = (int) ipv4;
+                groupCount = 2;
+                i = len;
+            } else {
+                if (i == start || i - start > 4) {
+                    return false;
+                }
+                groupCount = 1;
+            }
+            final int bits = groupCount << 4;
+            final long mask = (1L << bits) - 1;
+            if (compressed) {
+                tailHigh = (tailHigh << bits) | (tailLow >>> (64 - bits));
+                tailLow = (tailLow << bits) | (group & mask);
+                tailCount += groupCount;
+            } else {
+                headHigh = (headHigh << bits) | (headLow >>> (64 - bits));
+                headLow = (headLow << bits) | (group & mask);
+                headCount += groupCount;
+            }
+            if (i == len) {
+                break;
+            }
+            if (ipv6.charAt(i) != ':' || ++i == len) {
+                return false;
+            }
+            if (ipv6.charAt(i) == ':') {
+                if (compressed) {
+                    return false;
+                }
+                compressed = true;
+                i++;
+            }
+        }
+
+        final int count = headCount + tailCount;
+        if (compressed ? count > 7 : count != 8) {
+            return false;
+        }
+        // shift head to the top
+        final int shift = (8 - headCount) << 4;
+        if (shift >= 128) {
+            headHigh = 0;
+            headLow = 0;
+        } else if (shift >= 64) {
+            headHigh = headLow << (shift - 64);
+            headLow = 0;
+        } else if (shift > 0) {
+            headHigh = (headHigh << shift) | (headLow >>> (64 - shift));
+            headLow <<= shift;
+        }
+        out[0] = headHigh | tailHigh;
+        out[1] = headLow | tailLow;
+        return true;
+    }
+
+    /**
+     * Format IPv6, the longest run of zero groups is compressed as "::".
+     *
+     * @param high
+     * @param low
+     * @return
+     */
+    public static String toString(final long high, final long low) {
+        // find the longest run of zero groups
+        int bestStart = -1;
+        int bestLen = 1;
+        for (int i = 0, start = -1; i <= 8; i++) {
+            if (i < 8 && getIpv6Group(high, low, i) == 0) {
+                if (start < 0) {
+                    start = i;
+                }
+                continue;
+            }
+            if (start >= 0 && i - start > bestLen) {
+                bestStart = start;
+                bestLen = i - start;
+            }
+            start = -1;
+        }
+        final StringBuilder buf = new StringBuilder(39);
+        for (int i = 0; i < 8; i++) {
+            if (i == bestStart) {
+                buf.append("::");
+                i += bestLen - 1;
+                continue;
+            }
+            if (buf.length() != 0 && buf.charAt(buf.length() - 1) != ':') {
+                buf.append(':');
+            }
+            buf.append(Integer.toHexString(getIpv6Group(high, low, i)));
+        }
+        return buf.toString();
+    }
+
+    private static int getIpv6Group(final long high, final long low, final int index) {
+        return (int) (((index < 4 ? high : low) >>> ((3 - (index & 3)) << 4)) & 0xFFFF);
+    }
+
+    /**
+     * High 64 bits of mask of IPv6 network prefix.
+     *
+     * @param mark prefix length, 0-128
+     * @return
+     */
+    public static long getIpv6MaskHigh(final int mark) {
+        if (mark <= 0) {
+            return 0L;
+        }
+        return mark >= 64 ? -1L : -1L << (64 - mark);
+    }
+
+    /**
+     * Low 64 bits of mask of IPv6 network prefix.
+     *
+     * @param mark prefix length, 0-128
+     * @return
+     */
+    public static long getIpv6MaskLow(final int mark) {
+        if (mark <= 64) {
+            return 0L;
+        }
+        return mark >= 128 ? -1L : -1L << (128 - mark);
+    }
+
     public static boolean isIpv4(String ipv4) {
         if (ipv4 == null) {
             return false;
         }
-        return REGX_IP.matcher(ipv4).matches();
+        return parseIpv4(ipv4) >= 0;
     }
 
+    /**
+     * Parse IPv4, lenient, each piece is masked to 8 bits.
+     *
+     * Note: common ips are parsed without allocating, see {@link #parseIpv4(CharSequence)} for strict parsing.
+     *
+     * @param ipv4
+     * @return
+     * @throws NumberFormatException if a piece is not a number
+     */
     public static int parseInt(final String ipv4) {
-
+        final long ip = parseIpv4(ipv4);
+        if (ip >= 0) {
+            return (int) ip;
+        }
         final int position1 = ipv4.indexOf('.');
         final int position2 = ipv4.indexOf('.', position1 + 1);
         final int position3 = ipv4.indexOf('.', position2 + 1);
@@ -93,19 +426,21 @@ public class IpUtil {
                 | ((Integer.parseInt(ipv4.substring(position3 + 1)) & 0xFF));
     }
 
+    /**
+     * Parse IPv4, lenient, each piece is truncated to 8 bits.
+     *
+     * @param ipv4
+     * @return
+     * @throws NumberFormatException if a piece is not a number
+     */
     public static byte[] parseBytes(final String ipv4) {
-
-        final int position1 = ipv4.indexOf('.');
-        final int position2 = ipv4.indexOf('.', position1 + 1);
-        final int position3 = ipv4.indexOf('.', position2 + 1);
-
-        final byte[] ret = new byte[4];
-
-        ret[0] = (byte) Integer.parseInt(ipv4.substring(0, position1));
-        ret[1] = (byte) Integer.parseInt(ipv4.substring(position1 + 1, position2));
-        ret[2] = (byte) Integer.parseInt(ipv4.substring(position2 + 1, position3));
-        ret[3] = (byte) Integer.parseInt(ipv4.substring(position3 + 1));
-        return ret;
+        final int ip = parseInt(ipv4);
+        return new byte[]{
+            (byte) (ip >>> 24),
+            (byte) (ip >>> 16),
+            (byte) (ip >>> 8),
+            (byte) ip
+        };
     }
 
     public static String toString(final long ip) {
@@ -113,10 +448,82 @@ public class IpUtil {
     }
 
     public static String toString(final int ip) {
-        return Integer.toString(((ip >> 24) & 0xFF)) + '.'
-                + ((ip >> 16) & 0xFF) + '.'
-                + ((ip >> 8) & 0xFF) + '.'
-                + ((ip & 0xFF));
+        final char[] buf = new char[IPV4_MAX_LENGTH];
+        return new String(buf, 0, writeTo(buf, 0, ip));
+    }
+
+    /**
+     * Write dotted IPv4 to given buffer.
+     *
+     * @param buf at least {@link #IPV4_MAX_LENGTH} chars remaining from off
+     * @param off
+     * @param ip
+     * @return offset after the written chars
+     */
+    public static int writeTo(final char[] buf, int off, final int ip) {
+        off = writeOctet(buf, off, ip >>> 24);
+        buf[off++] = '.';
+        off = writeOctet(buf, off, (ip >>> 16) & 0xFF);
+        buf[off++] = '.';
+        off = writeOctet(buf, off, (ip >>> 8) & 0xFF);
+        buf[off++] = '.';
+        return writeOctet(buf, off, ip & 0xFF);
+    }
+
+    private static int writeOctet(final char[] buf, final int off, final int octet) {
+        final char[] chars = OCTETS[octet];
+        final int len = chars.length;
+        System.arraycopy(chars, 0, buf, off, len);
+        return off + len;
+    }
+
+    /**
+     * Append dotted IPv4, without creating strings.
+     *
+     * @param out
+     * @param ip
+     * @return out
+     */
+    public static StringBuilder appendTo(final StringBuilder out, final int ip) {
+        return out.append(OCTETS[ip >>> 24]).append('.')
+                .append(OCTETS[(ip >>> 16) & 0xFF]).append('.')
+                .append(OCTETS[(ip >>> 8) & 0xFF]).append('.')
+                .append(OCTETS[ip & 0xFF]);
+    }
+
+    /**
+     * Append dotted IPv4, without creating strings.
+     *
+     * @param out
+     * @param ip
+     * @return out
+     * @throws IOException
+     */
+    public static Appendable appendTo(final Appendable out, final int ip) throws IOException {
+        if (out instanceof StringBuilder) {
+            return appendTo((StringBuilder) out, ip);
+        }
+        appendOctet(out, ip >>> 24);
+        out.append('.');
+        appendOctet(out, (ip >>> 16) & 0xFF);
+        out.append('.');
+        appendOctet(out, (ip >>> 8) & 0xFF);
+        out.append('.');
+        appendOctet(out, ip & 0xFF);
+        return out;
+    }
+
+    private static void appendOctet(final Appendable out, final int octet) throws IOException {
+        final char[] chars = OCTETS[octet];
+        if (out instanceof Writer) {
+            ((Writer) out).write(chars, 0, chars.length);
+        } else if (out instanceof PrintAppendable) {
+            ((PrintAppendable) out).append(chars);
+        } else {
+            for (char c : chars) {
+                out.append(c);
+            }
+        }
     }
 
     public static long makeLong(final byte b0, final byte b1, final byte b2, final byte b3) {
@@ -0,0 +1,269 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.ip;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import jodd.io.StreamUtil;
+import org.febit.lang.LongMap;
+import org.febit.util.StringUtil;
+import org.febit.util.ip.IpSeeker.Area;
+
+/**
+ * IPv6 seeker.
+ *
+ * Format (big-endian):
+ * <pre>
+ *   int dictStart, int rangeStart, int count
+ *   dict, words joined by '\001', the first is "None"
+ *   ranges, sorted by end: long endHigh, long endLow, long key
+ * </pre>
+ * Ranges are continuous, the first starts at "::" and the last ends at "ffff:...:ffff". Key is same as
+ * {@link IpSeeker#locateKey(int)}.
+ *
+ * @author zqq90
+ */
+public class Ipv6Seeker {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 3 long: endHigh, endLow, key.
+     */
+    protected static final int ENTRY_SIZE = 24;
+    protected static final int HEAD_SIZE = 12;
+
+    public static Ipv6Seeker create(final String filePath) throws IOException {
+        return create(new File(filePath));
+    }
+
+    public static Ipv6Seeker create(final File file) throws IOException {
+        return create(file.toPath());
+    }
+
+    public static Ipv6Seeker create(final Path path) throws IOException {
+        return create(Files.readAllBytes(path));
+    }
+
+    public static Ipv6Seeker create(final InputStream in) throws IOException {
+        return create(StreamUtil.readBytes(in));
+    }
+
+    public static Ipv6Seeker create(final byte[] buffer) {
+        return create(ByteBuffer.wrap(buffer));
+    }
+
+    public static Ipv6Seeker create(final ByteBuffer buffer) {
+        final ByteBuffer buf = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+
+        final int dictStart = buf.getInt(0);
+        final int rangeStart = buf.getInt(4);
+        final int count = buf.getInt(8);
+
+        final String[] dict = StringUtil.splitc(BufferUtil.getString(buf, dictStart, rangeStart - dictStart, UTF_8), '\001');
+        dict[0] = null; // "None" => null
+
+        final long[] endHighs = new long[count];
+        final long[] endLows = new long[count];
+        final long[] keys = new long[count];
+        for (int i = 0, pos = rangeStart; i < count; i++, pos += ENTRY_SIZE) {
+            endHighs[i] = buf.getLong(pos) ^ Long.MIN_VALUE;
+            endLows[i] = buf.getLong(pos + 8) ^ Long.MIN_VALUE;
+            keys[i] = buf.getLong(pos + 16);
+        }
+        return new Ipv6Seeker(dict, endHighs, endLows, keys);
+    }
+
+    protected final String[] dict;
+    /**
+     * Ends of ranges, sign-flipped for signed comparing.
+     */
+    protected final long[] endHighs;
+    protected final long[] endLows;
+    protected final long[] keys;
+    /**
+     * Index of the first range which ends in or after each /16 prefix, the last one is a sentinel.
+     */
+    protected final int[] prefixStarts;
+    protected final LongMap<Area> areas;
+
+    protected Ipv6Seeker(String[] dict, long[] endHighs, long[] endLows, long[] keys) {
+        this.dict = dict;
+        this.endHighs = endHighs;
+        this.endLows = endLows;
+        this.keys = keys;
+        this.prefixStarts = resolvePrefixStarts(endHighs);
+        this.areas = resolveAreas(keys, dict);
+    }
+
+    protected static int[] resolvePrefixStarts(final long[] endHighs) {
+        final int count = endHighs.length;
+        final int[] starts = new int[0x10000 + 1];
+        int index = 0;
+        for (int prefix = 0; prefix < 0x10000; prefix++) {
+            while (index < count - 1
+                    && (int) ((endHighs[index] ^ Long.MIN_VALUE) >>> 48) < prefix) {
+                index++;
+            }
+            starts[prefix] = index;
+        }
+        starts[0x10000] = count - 1;
+        return starts;
+    }
+
+    protected static LongMap<Area> resolveAreas(final long[] keys, final String[] dict) {
+        final LongMap<Area> map = new LongMap<>(dict.length);
+        for (long key : keys) {
+            if (!map.containsKey(key)) {
+                map.put(key, IpSeeker.createArea(key, dict));
+            }
+        }
+        return map;
+    }
+
+    protected Area createArea(final long key) {
+        return IpSeeker.createArea(key, dict);
+    }
+
+    protected Area getArea(final long key) {
+        Area area = this.areas.get(key);
+        return area != null ? area : createArea(key);
+    }
+
+    public int size() {
+        return this.keys.length;
+    }
+
+    /**
+     * Get word in dict by index.
+     *
+     * @param index
+     * @return null if None
+     */
+    public String getWord(final int index) {
+        return this.dict[index];
+    }
+
+    /**
+     * Find index of the range contains given ip.
+     *
+     * @param high
+     * @param low
+     * @return
+     */
+    protected int findIndex(final long high, final long low) {
+        final long keyHigh = high ^ Long.MIN_VALUE;
+        final long keyLow = low ^ Long.MIN_VALUE;
+        final long[] highs = this.endHighs;
+        final long[] lows = this.endLows;
+        final int prefix = (int) (high >>> 48);
+        int start = this.prefixStarts[prefix];
+        int end = this.prefixStarts[prefix + 1];
+        while (start < end) {
+            int mid = (start + end) >>> 1;
+            long midHigh = highs[mid];
+            if (midHigh < keyHigh || (midHigh == keyHigh && lows[mid] < keyLow)) {
+                start = mid + 1;
+            } else {
+                end = mid;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Locate given ip, without allocating.
+     *
+     * @see IpSeeker#locateKey(int)
+     * @param high
+     * @param low
+     * @return packed indexes in dict
+     */
+    public long locateKey(final long high, final long low) {
+        return this.keys[findIndex(high, low)];
+    }
+
+    public Area locateArea(final long high, final long low) {
+        return getArea(locateKey(high, low));
+    }
+
+    /**
+     * Locate given ip.
+     *
+     * @param ipv6
+     * @return null if not a IPv6
+     */
+    public Area locateArea(final String ipv6) {
+        final long[] ip = new long[2];
+        if (!IpUtil.parseIpv6(ipv6, ip)) {
+            return null;
+        }
+        return locateArea(ip[0], ip[1]);
+    }
+
+    /**
+     * Locate given ip, IPv4 is located as IPv4-mapped address "::ffff:a.b.c.d".
+     *
+     * @param ip
+     * @return
+     */
+    public Area locateArea(final InetAddress ip) {
+        final byte[] bytes = ip.getAddress();
+        if (ip instanceof Inet6Address) {
+            return locateArea(toLong(bytes, 0), toLong(bytes, 8));
+        }
+        if (ip instanceof Inet4Address) {
+            return locateArea(0L, 0xFFFF00000000L | IpUtil.makeLong(bytes[0], bytes[1], bytes[2], bytes[3]));
+        }
+        return null;
+    }
+
+    /**
+     * Get start of the range which contains given ip.
+     *
+     * @param high
+     * @param low
+     * @param out high 64 bits will be set to out[0], and low to out[1]
+     */
+    public void locateIpFrom(final long high, final long low, final long[] out) {
+        final int index = findIndex(high, low);
+        if (index == 0) {
+            out[0] = 0L;
+            out[1] = 0L;
+            return;
+        }
+        final long prevHigh = this.endHighs[index - 1] ^ Long.MIN_VALUE;
+        final long prevLow = this.endLows[index - 1] ^ Long.MIN_VALUE;
+        out[1] = prevLow + 1;
+        out[0] = prevLow == -1L ? prevHigh + 1 : prevHigh;
+    }
+
+    /**
+     * Get end of the range which contains given ip.
+     *
+     * @param high
+     * @param low
+     * @param out high 64 bits will be set to out[0], and low to out[1]
+     */
+    public void locateIpTo(final long high, final long low, final long[] out) {
+        final int index = findIndex(high, low);
+        out[0] = this.endHighs[index] ^ Long.MIN_VALUE;
+        out[1] = this.endLows[index] ^ Long.MIN_VALUE;
+    }
+
+    private static long toLong(final byte[] bytes, final int offset) {
+        long result = 0;
+        for (int i = 0; i < 8; i++) {
+            result = (result << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return result;
+    }
+}
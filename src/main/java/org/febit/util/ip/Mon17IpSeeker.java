@@ -6,9 +6,14 @@ import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 import org.febit.lang.iter.BaseIter;
 
 /**
@@ -20,20 +25,91 @@ public final class Mon17IpSeeker {
     private static final Charset UTF_8 = Charset.forName("UTF-8");
     public static final Location UNKNOWN_LOCATION = new Location("未知\t未知\t未知\t未知");
 
-    private final byte[] buffer;
+    private static final int RECORD_START = 1024 + 4;
+
+    private final ByteBuffer buffer;
     private final int[] fastIndex;
     private final int offsetLimit;
+    /**
+     * Offset where records end and text starts.
+     */
+    private final int recordLimit;
+    private final boolean fastIndexValid;
+
+    /**
+     * Ends of ranges, sign-flipped for signed comparing, null if not indexed.
+     */
+    private final int[] rangeEnds;
+    /**
+     * Index of the first range of each segment, in {@link #rangeEnds}.
+     */
+    private final int[] segmentStarts;
 
-    private Mon17IpSeeker(final byte[] buffer) {
-        this.buffer = buffer;
+    /**
+     * Decoded location of each record, filled lazily.
+     *
+     * Note: races are benign, since location is immutable.
+     */
+    private final Location[] locations;
+    /**
+     * Decoded locations by text pointer, shared by records with same text.
+     */
+    private final ConcurrentHashMap<Integer, Location> textLocations;
+
+    private Mon17IpSeeker(final ByteBuffer buffer, final boolean indexed) {
+        this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
         this.offsetLimit = getIntB(0);
+        this.recordLimit = Math.min(this.offsetLimit - 1024, buffer.capacity() - 8);
 
         final int[] index = new int[256];
+        boolean valid = this.recordLimit > RECORD_START;
         for (int i = 0; i < 256; i++) {
             // fastindex(+1024) head(+4)
-            index[i] = (getIntL(4 + (i << 2)) << 3) + 1024 + 4;
+            index[i] = (getIntL(4 + (i << 2)) << 3) + RECORD_START;
+            if (index[i] < RECORD_START || index[i] >= this.recordLimit) {
+                valid = false;
+            }
         }
         this.fastIndex = index;
+        this.fastIndexValid = valid;
+        this.locations = new Location[Math.max(0, (this.recordLimit - RECORD_START) >> 3)];
+        this.textLocations = new ConcurrentHashMap<>();
+
+        final int[] ends = valid && indexed ? resolveRangeEnds() : null;
+        if (ends != null) {
+            final int[] starts = new int[256];
+            for (int i = 0; i < 256; i++) {
+                starts[i] = Math.min((index[i] - RECORD_START) >> 3, ends.length);
+            }
+            this.segmentStarts = starts;
+        } else {
+            this.segmentStarts = null;
+        }
+        this.rangeEnds = ends;
+    }
+
+    /**
+     * Decode ends of all ranges, until the first one not increased.
+     *
+     * @return null if no range
+     */
+    private int[] resolveRangeEnds() {
+        final int[] ends = new int[(this.recordLimit - RECORD_START) >> 3];
+        int count = 0;
+        long last = -1L;
+        for (int offset = RECORD_START; count < ends.length; offset += 8) {
+            int ip = getIntB(offset);
+            long ipLong = IpUtil.int2long(ip);
+            if (ipLong <= last) {
+                break;
+            }
+            last = ipLong;
+            ends[count++] = ip ^ Integer.MIN_VALUE;
+        }
+        if (count == 0) {
+            return null;
+        }
+        return count == ends.length ? ends : Arrays.copyOf(ends, count);
     }
 
     public static Mon17IpSeeker create(final String filePath) throws IOException {
@@ -48,8 +124,32 @@ public final class Mon17IpSeeker {
         return create(Files.readAllBytes(path));
     }
 
+    /**
+     * Create a seeker backed by a read-only mapping of the given file.
+     *
+     * Note: the database is not copied into heap, ranges are searched in the mapping.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static Mon17IpSeeker createMapped(final Path path) throws IOException {
+        return new Mon17IpSeeker(BufferUtil.map(path), false);
+    }
+
+    /**
+     * Create a seeker backed by a read-only mapping of the given channel.
+     *
+     * @param channel
+     * @return
+     * @throws IOException
+     */
+    public static Mon17IpSeeker create(final FileChannel channel) throws IOException {
+        return new Mon17IpSeeker(BufferUtil.map(channel), false);
+    }
+
     public static Mon17IpSeeker create(final byte[] buffer) {
-        return new Mon17IpSeeker(buffer);
+        return new Mon17IpSeeker(ByteBuffer.wrap(buffer), true);
     }
 
     /**
@@ -112,13 +212,87 @@ public final class Mon17IpSeeker {
     }
 
     public Location locate(final long ipv4) {
+        final int segment = (int) ((ipv4 >> 24) & 0xFF);
+        final int key = (int) ipv4 ^ Integer.MIN_VALUE;
+        final int[] ends = this.rangeEnds;
+        final int offset;
+        if (ends != null) {
+            final int index = findRangeIndex(ends, this.segmentStarts[segment], key);
+            offset = index >= 0 ? RECORD_START + (index << 3) : -1;
+        } else {
+            offset = findRecordOffset(segment, key);
+        }
+        if (offset >= 0) {
+            return getLocationAtOffset(offset);
+        }
+        return scanLocate(ipv4);
+    }
+
+    /**
+     * Binary search records in buffer, between the heads of given segment and the next.
+     *
+     * @param segment
+     * @param key sign-flipped ip
+     * @return -1 if not found
+     */
+    private int findRecordOffset(final int segment, final int key) {
+        if (!this.fastIndexValid || segment == 255) {
+            return -1;
+        }
+        int start = (this.fastIndex[segment] - RECORD_START) >> 3;
+        int end = (this.fastIndex[segment + 1] - RECORD_START) >> 3;
+        if (start > end || (getIntB(RECORD_START + (end << 3)) ^ Integer.MIN_VALUE) < key) {
+            return -1;
+        }
+        while (start < end) {
+            int mid = (start + end) >>> 1;
+            if ((getIntB(RECORD_START + (mid << 3)) ^ Integer.MIN_VALUE) < key) {
+                start = mid + 1;
+            } else {
+                end = mid;
+            }
+        }
+        return RECORD_START + (start << 3);
+    }
+
+    /**
+     * Binary search the first range not lower than the given ip.
+     *
+     * @param ends sign-flipped ends
+     * @param start index of the first range of segment
+     * @param key sign-flipped ip
+     * @return -1 if not found
+     */
+    private static int findRangeIndex(final int[] ends, int start, final int key) {
+        int end = ends.length - 1;
+        if (start > end || ends[end] < key) {
+            return -1;
+        }
+        while (start < end) {
+            int mid = (start + end) >>> 1;
+            if (ends[mid] < key) {
+                start = mid + 1;
+            } else {
+                end = mid;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Locate given ip by scanning records from the segment head, used when records are not indexed.
+     *
+     * @param ipv4
+     * @return
+     */
+    protected Location scanLocate(final long ipv4) {
         final int maxCompIndex = this.offsetLimit;
         int offset = getSegmentOffset((int) ((ipv4 >> 24) & 0xFF));
         for (; offset < maxCompIndex; offset += 8) {
             if (IpUtil.int2long(getIntB(offset)) < ipv4) {
                 continue;
             }
-            return createLocationAtOffset(offset);
+            return getLocationAtOffset(offset);
         }
         return UNKNOWN_LOCATION;
     }
@@ -128,26 +302,47 @@ public final class Mon17IpSeeker {
     }
 
     private int getIntL(final int offset) {
-        final byte[] buf = this.buffer;
-        return IpUtil.makeInt(buf[offset + 3],
-                buf[offset + 2],
-                buf[offset + 1],
-                buf[offset]);
+        return Integer.reverseBytes(this.buffer.getInt(offset));
     }
 
     private int getIntB(final int offset) {
-        final byte[] buf = this.buffer;
-        return IpUtil.makeInt(buf[offset],
-                buf[offset + 1],
-                buf[offset + 2],
-                buf[offset + 3]);
+        return this.buffer.getInt(offset);
+    }
+
+    /**
+     * Get location of record at offset, decoded once.
+     *
+     * @param offset
+     * @return
+     */
+    protected Location getLocationAtOffset(final int offset) {
+        final int index = (offset - RECORD_START) >> 3;
+        final Location[] cache = this.locations;
+        if (index < 0 || index >= cache.length) {
+            return createLocationAtOffset(offset);
+        }
+        Location location = cache[index];
+        if (location == null) {
+            // text offset and length
+            final Integer textPointer = getIntB(offset + 4);
+            location = this.textLocations.get(textPointer);
+            if (location == null) {
+                location = createLocationAtOffset(offset);
+                Location old = this.textLocations.putIfAbsent(textPointer, location);
+                if (old != null) {
+                    location = old;
+                }
+            }
+            cache[index] = location;
+        }
+        return location;
     }
 
     protected Location createLocationAtOffset(int offset) {
-        final byte[] buf = this.buffer;
-        return new Location(new String(buf,
-                this.offsetLimit - 1024 + IpUtil.makeInt((byte) 0, buf[offset + 6], buf[offset + 5], buf[offset + 4]),
-                buf[offset + 7] & 0xFF,
+        final ByteBuffer buf = this.buffer;
+        return new Location(BufferUtil.getString(buf,
+                this.offsetLimit - 1024 + IpUtil.makeInt((byte) 0, buf.get(offset + 6), buf.get(offset + 5), buf.get(offset + 4)),
+                buf.get(offset + 7) & 0xFF,
                 UTF_8));
     }
 
@@ -177,7 +372,7 @@ public final class Mon17IpSeeker {
         @Override
         public LocationIP next() {
             long next = getIp();
-            LocationIP locationIP = new LocationIP(last + 1, next, createLocationAtOffset(this.cursor));
+            LocationIP locationIP = new LocationIP(last + 1, next, getLocationAtOffset(this.cursor));
             this.last = next;
             this.cursor += 8;
             return locationIP;
@@ -229,11 +424,13 @@ public final class Mon17IpSeeker {
         private final String unit;
 
         private Location(final String location) {
-            final String[] split = location.split("\t", 4);
-            this.country = split[0];
-            this.province = split[1];
-            this.city = split[2];
-            this.unit = split[3];
+            final int end0 = location.indexOf('\t');
+            final int end1 = end0 < 0 ? -1 : location.indexOf('\t', end0 + 1);
+            final int end2 = end1 < 0 ? -1 : location.indexOf('\t', end1 + 1);
+            this.country = end0 < 0 ? location : location.substring(0, end0);
+            this.province = end0 < 0 ? "" : location.substring(end0 + 1, end1 < 0 ? location.length() : end1);
+            this.city = end1 < 0 ? "" : location.substring(end1 + 1, end2 < 0 ? location.length() : end2);
+            this.unit = end2 < 0 ? "" : location.substring(end2 + 1);
         }
 
         /**
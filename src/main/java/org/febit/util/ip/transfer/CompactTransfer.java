@@ -0,0 +1,203 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.ip.transfer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import org.febit.lang.LongMap;
+import org.febit.util.ip.CompactIpSeeker;
+import org.febit.util.ip.IpSeeker;
+
+/**
+ * Transfer IP database to the compact (v2) format.
+ *
+ * @see CompactIpSeeker
+ * @author zqq90
+ */
+public class CompactTransfer {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(CompactTransfer.class);
+
+    /**
+     * Transfer a database file in any format.
+     *
+     * @param inFile
+     * @param outFile
+     * @throws IOException
+     */
+    public static void transfer(String inFile, String outFile) throws IOException {
+        transfer(IpSeeker.createMapped(Paths.get(inFile)), outFile);
+    }
+
+    public static void transfer(IpSeeker seeker, String outFile) throws IOException {
+        Files.write(Paths.get(outFile), encode(seeker));
+    }
+
+    public static byte[] encode(final IpSeeker seeker) {
+
+        final String[] dict = seeker.getDict();
+        dict[0] = "None";
+        final StringBuilder dictBuf = new StringBuilder(dict.length * 8);
+        for (int i = 0; i < dict.length; i++) {
+            if (i != 0) {
+                dictBuf.append('\001');
+            }
+            dictBuf.append(dict[i]);
+        }
+        final byte[] dictBytes = dictBuf.toString().getBytes(Charset.forName("UTF-8"));
+
+        // collect all ranges
+        final IpSeeker.Cursor cursor = seeker.cursor();
+        int[] littles = new int[1 << 16];
+        long[] keys = new long[1 << 16];
+        final int[] segmentEnds = new int[256];
+        int count = 0;
+        while (cursor.next()) {
+            if (count == littles.length) {
+                littles = Arrays.copyOf(littles, count << 1);
+                keys = Arrays.copyOf(keys, count << 1);
+            }
+            final long to = cursor.getTo();
+            littles[count] = (int) (to & 0xFFFFFF);
+            keys[count++] = cursor.getKey();
+            segmentEnds[(int) (to >>> 24)] = count;
+        }
+
+        // global keys, the most used first
+        final long[] globalKeys = sortByUsage(keys, 0, count);
+        final LongMap<Integer> globalIndexes = new LongMap<>(globalKeys.length);
+        for (int i = 0; i < globalKeys.length; i++) {
+            globalIndexes.put(globalKeys[i], i);
+        }
+        final int paletteWidth = CompactIpSeeker.getPaletteWidth(globalKeys.length);
+
+        final int keysStart = CompactIpSeeker.COMPACT_HEAD_SIZE + dictBytes.length;
+        final int segmentsStart = keysStart + (globalKeys.length << 3);
+        final ByteArrayOutputStream segments = new ByteArrayOutputStream(count * 4);
+        final int[] segmentPos = new int[257];
+        for (int segment = 0, from = 0; segment < 256; segment++) {
+            segmentPos[segment] = segmentsStart + segments.size();
+            writeSegment(segments, segmentsStart + segments.size(),
+                    littles, keys, from, segmentEnds[segment], globalIndexes, paletteWidth);
+            from = segmentEnds[segment];
+        }
+        segmentPos[256] = segmentsStart + segments.size();
+
+        final ByteBuffer result = ByteBuffer.allocate(segmentPos[256]);
+        result.putInt(CompactIpSeeker.MAGIC);
+        result.putInt(CompactIpSeeker.COMPACT_HEAD_SIZE);
+        result.putInt(keysStart);
+        result.putInt(globalKeys.length);
+        for (int pos : segmentPos) {
+            result.putInt(pos);
+        }
+        result.put(dictBytes);
+        for (long key : globalKeys) {
+            result.putLong(key);
+        }
+        result.put(segments.toByteArray());
+
+        LOG.info("Amount of ranges: {}", count);
+        LOG.info("Amount of keys: {}", globalKeys.length);
+        LOG.info("Compact size: {}", result.capacity());
+        return result.array();
+    }
+
+    /**
+     * Distinct keys, the most used first, then by the first appearance.
+     */
+    protected static long[] sortByUsage(long[] keys, int from, int to) {
+        final LongMap<int[]> counts = new LongMap<>();
+        final long[] distinct = new long[to - from];
+        int size = 0;
+        for (int i = from; i < to; i++) {
+            int[] counter = counts.get(keys[i]);
+            if (counter == null) {
+                counts.put(keys[i], counter = new int[1]);
+                distinct[size++] = keys[i];
+            }
+            counter[0]++;
+        }
+        final long[] packed = new long[size];
+        for (int i = 0; i < size; i++) {
+            packed[i] = (((long) (Integer.MAX_VALUE - counts.get(distinct[i])[0])) << 32) | i;
+        }
+        Arrays.sort(packed);
+        final long[] result = new long[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = distinct[(int) packed[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Write a segment.
+     *
+     * @param out
+     * @param position absolute position of this segment
+     * @param littles
+     * @param keys
+     * @param from index of the first range of this segment
+     * @param to index after the last range of this segment
+     * @param globalIndexes index of keys in global keys
+     * @param paletteWidth
+     */
+    protected static void writeSegment(ByteArrayOutputStream out, int position,
+            int[] littles, long[] keys, int from, int to,
+            LongMap<Integer> globalIndexes, int paletteWidth) {
+
+        final int size = to - from;
+        // palette, the most used first, so that has the shortest index
+        final long[] palette = sortByUsage(keys, from, to);
+        final LongMap<Integer> paletteIndexes = new LongMap<>(palette.length);
+        for (int i = 0; i < palette.length; i++) {
+            paletteIndexes.put(palette[i], i);
+        }
+
+        // entries
+        final int blockCount = (size + CompactIpSeeker.BLOCK_SIZE - 1) >>> CompactIpSeeker.BLOCK_SHIFT;
+        final int headSize = 8 + palette.length * paletteWidth + (blockCount << 3);
+        final int entriesStart = position + headSize;
+        final ByteArrayOutputStream entries = new ByteArrayOutputStream(size * 3);
+        final int[] blocks = new int[blockCount << 1];
+        int last = -1;
+        for (int i = 0; i < size; i++) {
+            final int little = littles[from + i];
+            if ((i & (CompactIpSeeker.BLOCK_SIZE - 1)) == 0) {
+                blocks[(i >>> CompactIpSeeker.BLOCK_SHIFT) << 1] = little;
+                blocks[((i >>> CompactIpSeeker.BLOCK_SHIFT) << 1) + 1] = entriesStart + entries.size();
+            }
+            writeVarint(entries, little - last);
+            writeVarint(entries, paletteIndexes.get(keys[from + i]));
+            last = little;
+        }
+
+        final ByteBuffer head = ByteBuffer.allocate(headSize);
+        head.putInt(size);
+        head.putInt(palette.length);
+        for (long key : palette) {
+            if (paletteWidth == 2) {
+                head.putChar((char) globalIndexes.get(key).intValue());
+            } else {
+                head.putInt(globalIndexes.get(key));
+            }
+        }
+        for (int value : blocks) {
+            head.putInt(value);
+        }
+        out.write(head.array(), 0, head.capacity());
+        out.write(entries.toByteArray(), 0, entries.size());
+    }
+
+    protected static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -65,10 +65,66 @@ public class GeoLite2Csv {
         GeoLite2CsvDict.DictEntry location = end != IpUtil.IP_MAX ? dict.get(arr[1], arr[2]) : GeoLite2CsvDict.UNKNOWN;
         // location
         if (location == null) {
-            LOG.debug("Dict not found, line: {}", CsvUtil.toCsvString(arr));
+            LOG.debug("Dict not found, line: {}", CsvUtil.toCsvString((Object[]) arr));
             return null;
         }
 
         return new TransferInputImpl(start, end, location.countryCode, null, location.province, location.city);
     }
+
+    /**
+     * Read GeoLite2-City-Blocks-IPv6 csv.
+     *
+     * @param filepath
+     * @param dict
+     * @return
+     * @throws IOException
+     */
+    public static Iter<Ipv6TransferInput> createIpv6IteratorFromFile(String filepath, final GeoLite2CsvDict dict) throws IOException {
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filepath), "UTF-8"));
+
+        //skip title
+        reader.readLine();
+
+        return CsvUtil.linesIter(reader)
+                .map(new Function1<Ipv6TransferInput, String[]>() {
+                    @Override
+                    public Ipv6TransferInput call(String[] line) {
+                        return createIpv6TransferInput(line, dict);
+                    }
+                })
+                .excludeNull();
+    }
+
+    public static Ipv6TransferInput createIpv6TransferInput(String[] arr, GeoLite2CsvDict dict) {
+        if (arr == null) {
+            return null;
+        }
+
+        //IP
+        String ipSegment = arr[0];
+
+        int split = ipSegment.indexOf('/');
+        long[] head = new long[2];
+        if (split < 0 || !IpUtil.parseIpv6(ipSegment.substring(0, split), head)) {
+            LOG.debug("Not a IPv6 network, line: {}", CsvUtil.toCsvString((Object[]) arr));
+            return null;
+        }
+        int ipSegmentMark = Integer.parseInt(ipSegment.substring(split + 1));
+        long maskHigh = IpUtil.getIpv6MaskHigh(ipSegmentMark);
+        long maskLow = IpUtil.getIpv6MaskLow(ipSegmentMark);
+
+        GeoLite2CsvDict.DictEntry location = dict.get(arr[1], arr[2]);
+        // location
+        if (location == null) {
+            LOG.debug("Dict not found, line: {}", CsvUtil.toCsvString((Object[]) arr));
+            return null;
+        }
+
+        return new Ipv6TransferInputImpl(
+                head[0] & maskHigh, head[1] & maskLow,
+                head[0] | ~maskHigh, head[1] | ~maskLow,
+                location.countryCode, null, location.province, location.city);
+    }
 }
@@ -5,8 +5,14 @@ import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.febit.lang.IntMap;
 import org.febit.lang.Iter;
 import org.febit.util.CollectionUtil;
@@ -29,6 +35,8 @@ public class GeoLite2CsvDict {
         return line;
     }
 
+    protected static final int BATCH_SIZE = 4096;
+
     private final IntMap<DictEntry> map = new IntMap<>();
 
     public GeoLite2CsvDict() {
@@ -57,6 +65,48 @@ public class GeoLite2CsvDict {
         return result;
     }
 
+    /**
+     * Create a locale dict for the given words, could be used by {@link org.febit.util.ip.IpSeeker#withLocales}.
+     *
+     * Note: only given words are indexed, instead of all words of this dict, as {@link #createDictMap} does.
+     *
+     * @param words origin dict of seeker, in the same language with this dict
+     * @param dict dict in the target language
+     * @return words in the target language, in the same order, null if not found
+     */
+    public String[] createLocaleDict(String[] words, GeoLite2CsvDict dict) {
+        final Map<String, Integer> indexes = CollectionUtil.createMap(words.length);
+        for (int i = 0; i < words.length; i++) {
+            if (words[i] != null) {
+                indexes.put(words[i], i);
+            }
+        }
+        final String[] result = new String[words.length];
+        for (IntMap.Entry<DictEntry> entry : this.map) {
+            DictEntry keyEntry = entry.getValue();
+            DictEntry valueEntry = dict.get(keyEntry.geoId);
+            if (valueEntry == null) {
+                continue;
+            }
+            setLocaleWord(result, indexes, keyEntry.countryCode, valueEntry.countryCode);
+            setLocaleWord(result, indexes, keyEntry.country, valueEntry.country);
+            setLocaleWord(result, indexes, keyEntry.province, valueEntry.province);
+            setLocaleWord(result, indexes, keyEntry.city, valueEntry.city);
+            setLocaleWord(result, indexes, LocationUtil.fixProvince(keyEntry.province), valueEntry.province);
+            setLocaleWord(result, indexes, LocationUtil.fixCity(keyEntry.city), valueEntry.city);
+            setLocaleWord(result, indexes, StringUtil.cutSuffix(StringUtil.cutSuffix(keyEntry.city, "市"), "县"), valueEntry.city);
+        }
+        return result;
+    }
+
+    private static void setLocaleWord(String[] result, Map<String, Integer> indexes, String word, String value) {
+        Integer index = indexes.get(word);
+        if (index != null) {
+            // same with createDictMap, the latter wins
+            result[index] = value;
+        }
+    }
+
     public DictEntry get(String id, String id2) {
 
         id = id.trim();
@@ -104,6 +154,66 @@ public class GeoLite2CsvDict {
         }
     }
 
+    /**
+     * Load dict, lines are parsed by the given executor in batches.
+     *
+     * @param filepath
+     * @param executor
+     * @throws IOException
+     */
+    public void load(String filepath, ExecutorService executor) throws IOException {
+        this.map.clear();
+        final List<Future<List<DictEntry>>> batches = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filepath), "UTF-8"))) {
+            // skip head
+            reader.readLine();
+            for (;;) {
+                final List<String> lines = new ArrayList<>(BATCH_SIZE);
+                String line;
+                while (lines.size() < BATCH_SIZE && (line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+                if (lines.isEmpty()) {
+                    break;
+                }
+                batches.add(executor.submit(new Callable<List<DictEntry>>() {
+                    @Override
+                    public List<DictEntry> call() {
+                        return createEntries(lines);
+                    }
+                }));
+            }
+        }
+        try {
+            for (Future<List<DictEntry>> batch : batches) {
+                for (DictEntry entry : batch.get()) {
+                    add(entry);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    protected List<DictEntry> createEntries(List<String> lines) {
+        final List<DictEntry> entries = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            // same parser as the sequential loader
+            final String[] row = CsvUtil.toRow(line);
+            if (row == null) {
+                continue;
+            }
+            DictEntry entry = createEntry(row);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
     public static class DictEntry {
 
         final int geoId;
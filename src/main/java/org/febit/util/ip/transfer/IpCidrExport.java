@@ -0,0 +1,140 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.ip.transfer;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Paths;
+import org.febit.util.CsvUtil;
+import org.febit.util.ip.IpSeeker;
+import org.febit.util.ip.IpUtil;
+
+/**
+ * Export ranges of IP database as minimal CIDR blocks, adjacent ranges of the same location are coalesced first.
+ *
+ * Csv format, in ascending order:
+ * <pre>
+ *   cidr,country,isp,province,city
+ * </pre>
+ *
+ * @author zqq90
+ */
+public class IpCidrExport {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(IpCidrExport.class);
+
+    public interface Visitor {
+
+        /**
+         *
+         * @param start first ip of block
+         * @param mark prefix length, 0-32
+         * @param key packed indexes in dict, see {@link IpSeeker#locateKey(int)}
+         * @throws IOException
+         */
+        void visit(long start, int mark, long key) throws IOException;
+    }
+
+    /**
+     * Export CIDR blocks of given database file to csv.
+     *
+     * @param file
+     * @param csvFile
+     * @return count of blocks
+     * @throws IOException
+     */
+    public static int export(String file, String csvFile) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(csvFile), "UTF-8"))) {
+            return export(IpSeeker.createMapped(Paths.get(file)), writer);
+        }
+    }
+
+    /**
+     * Export CIDR blocks to csv.
+     *
+     * @param seeker
+     * @param writer
+     * @return count of blocks
+     * @throws IOException
+     */
+    public static int export(final IpSeeker seeker, final Writer writer) throws IOException {
+        final char[] buf = new char[IpUtil.IPV4_MAX_LENGTH + 3];
+        final int count = export(seeker, new Visitor() {
+            @Override
+            public void visit(long start, int mark, long key) throws IOException {
+                int len = IpUtil.writeTo(buf, 0, (int) start);
+                buf[len++] = '/';
+                if (mark >= 10) {
+                    buf[len++] = (char) ('0' + mark / 10);
+                }
+                buf[len++] = (char) ('0' + mark % 10);
+                CsvUtil.appendRow(writer,
+                        new String(buf, 0, len),
+                        seeker.getWord(IpSeeker.countryIndex(key)),
+                        seeker.getWord(IpSeeker.ispIndex(key)),
+                        seeker.getWord(IpSeeker.provinceIndex(key)),
+                        seeker.getWord(IpSeeker.cityIndex(key)));
+            }
+        });
+        LOG.info("CIDR blocks: {}", count);
+        return count;
+    }
+
+    /**
+     * Visit CIDR blocks in ascending order, straight from the segments, locations are not created.
+     *
+     * @param seeker
+     * @param visitor
+     * @return count of blocks
+     * @throws IOException
+     */
+    public static int export(final IpSeeker seeker, final Visitor visitor) throws IOException {
+        final IpSeeker.Cursor cursor = seeker.cursor();
+        if (!cursor.next()) {
+            return 0;
+        }
+        int count = 0;
+        long from = cursor.getFrom();
+        long to = cursor.getTo();
+        long key = cursor.getKey();
+        while (cursor.next()) {
+            //判断是否可以合并
+            if (cursor.getKey() == key) {
+                to = cursor.getTo();
+                continue;
+            }
+            count += visitCidrs(from, to, key, visitor);
+            from = cursor.getFrom();
+            to = cursor.getTo();
+            key = cursor.getKey();
+        }
+        count += visitCidrs(from, to, key, visitor);
+        return count;
+    }
+
+    /**
+     * Split range into minimal CIDR blocks.
+     *
+     * @param from
+     * @param to inclusive
+     * @param key
+     * @param visitor
+     * @return count of blocks
+     * @throws IOException
+     */
+    public static int visitCidrs(long from, final long to, final long key, final Visitor visitor) throws IOException {
+        int count = 0;
+        while (from <= to) {
+            // the biggest block aligned at from, and not over to
+            final int alignBits = from == 0 ? 32 : Long.numberOfTrailingZeros(from);
+            final int sizeBits = 63 - Long.numberOfLeadingZeros(to - from + 1);
+            final int bits = Math.min(alignBits, sizeBits);
+            visitor.visit(from, 32 - bits, key);
+            from += 1L << bits;
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,266 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.ip.transfer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.febit.lang.Iter;
+import org.febit.lang.iter.BaseIter;
+import org.febit.util.CsvUtil;
+import org.febit.util.StringUtil;
+import org.febit.util.ip.IpSeeker;
+import org.febit.util.ip.IpUtil;
+
+/**
+ * Streaming diff and merge of IP databases.
+ *
+ * Changelog is a csv, each row is a changed range with the new location, in ascending order:
+ * <pre>
+ *   from,to,country,isp,province,city
+ * </pre>
+ *
+ * @author zqq90
+ */
+public class IpDiff {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(IpDiff.class);
+
+    /**
+     * Write changed ranges from old file to new file.
+     *
+     * @param oldFile
+     * @param newFile
+     * @param changelogFile
+     * @return count of changed ranges
+     * @throws IOException
+     */
+    public static int diff(String oldFile, String newFile, String changelogFile) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(changelogFile), "UTF-8"))) {
+            return diff(IpSeeker.createMapped(Paths.get(oldFile)), IpSeeker.createMapped(Paths.get(newFile)), writer);
+        }
+    }
+
+    /**
+     * Write changed ranges from old seeker to new seeker.
+     *
+     * @param oldSeeker
+     * @param newSeeker
+     * @param writer
+     * @return count of changed ranges
+     * @throws IOException
+     */
+    public static int diff(IpSeeker oldSeeker, IpSeeker newSeeker, Writer writer) throws IOException {
+
+        final int[] translation = createTranslation(oldSeeker.getDict(), newSeeker.getDict());
+        final IpSeeker.Cursor oldCursor = oldSeeker.cursor();
+        final IpSeeker.Cursor newCursor = newSeeker.cursor();
+        oldCursor.next();
+        newCursor.next();
+
+        int count = 0;
+        // pending changed range
+        long changedFrom = -1L;
+        long changedTo = -1L;
+        long changedKey = 0L;
+
+        long from = 0L;
+        for (;;) {
+            final long to = Math.min(oldCursor.getTo(), newCursor.getTo());
+            final long newKey = newCursor.getKey();
+            if (translate(translation, oldCursor.getKey()) != newKey) {
+                if (changedFrom >= 0 && changedKey == newKey && changedTo + 1 == from) {
+                    changedTo = to;
+                } else {
+                    if (changedFrom >= 0) {
+                        writeRow(writer, changedFrom, changedTo, newSeeker, changedKey);
+                        count++;
+                    }
+                    changedFrom = from;
+                    changedTo = to;
+                    changedKey = newKey;
+                }
+            }
+            if (to >= IpUtil.IP_MAX) {
+                break;
+            }
+            from = to + 1;
+            if (oldCursor.getTo() == to) {
+                oldCursor.next();
+            }
+            if (newCursor.getTo() == to) {
+                newCursor.next();
+            }
+        }
+        if (changedFrom >= 0) {
+            writeRow(writer, changedFrom, changedTo, newSeeker, changedKey);
+            count++;
+        }
+        LOG.info("Changed ranges: {}", count);
+        return count;
+    }
+
+    /**
+     * Apply changelog to old file, and emit a new file.
+     *
+     * @param oldFile
+     * @param changelogFile
+     * @param outFile
+     * @throws IOException
+     */
+    public static void apply(String oldFile, String changelogFile, String outFile) throws IOException {
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(changelogFile), "UTF-8"));
+                Transfer transfer = new Transfer()) {
+            transfer.read(apply(IpSeeker.createMapped(Paths.get(oldFile)), reader));
+            transfer.emit(outFile);
+        }
+    }
+
+    /**
+     * Merge changelog into ranges of old seeker.
+     *
+     * @param oldSeeker
+     * @param changelog
+     * @return
+     */
+    public static Iter<TransferInput> apply(final IpSeeker oldSeeker, final Reader changelog) {
+        return new ApplyIter(oldSeeker.cursor(), CsvUtil.linesIter(changelog));
+    }
+
+    /**
+     * Index of each word of old dict in new dict, -1 if not found.
+     */
+    protected static int[] createTranslation(String[] oldDict, String[] newDict) {
+        final Map<String, Integer> newIndexes = new HashMap<>(newDict.length * 2);
+        for (int i = newDict.length - 1; i > 0; i--) {
+            newIndexes.put(newDict[i], i);
+        }
+        final int[] translation = new int[oldDict.length];
+        for (int i = 1; i < oldDict.length; i++) {
+            Integer index = newIndexes.get(oldDict[i]);
+            translation[i] = index != null ? index : -1;
+        }
+        return translation;
+    }
+
+    /**
+     * Translate old key to new key.
+     *
+     * @return -1 if any word not found
+     */
+    protected static long translate(final int[] translation, final long key) {
+        long result = 0L;
+        for (int shift = 48; shift >= 0; shift -= 16) {
+            int index = translation[(int) ((key >>> shift) & 0xFFFF)];
+            if (index < 0) {
+                return -1L;
+            }
+            result |= ((long) index) << shift;
+        }
+        return result;
+    }
+
+    protected static void writeRow(Writer writer, long from, long to, IpSeeker seeker, long key) throws IOException {
+        CsvUtil.appendRow(writer,
+                IpUtil.toString(from),
+                IpUtil.toString(to),
+                seeker.getWord(IpSeeker.countryIndex(key)),
+                seeker.getWord(IpSeeker.ispIndex(key)),
+                seeker.getWord(IpSeeker.provinceIndex(key)),
+                seeker.getWord(IpSeeker.cityIndex(key)));
+    }
+
+    protected static class ApplyIter extends BaseIter<TransferInput> {
+
+        protected final IpSeeker.Cursor cursor;
+        protected final Iter<String[]> changes;
+        protected long position;
+        protected TransferInputImpl change;
+        /**
+         * End of the last accepted change, -1 if none.
+         */
+        protected long lastTo = -1L;
+
+        protected ApplyIter(IpSeeker.Cursor cursor, Iter<String[]> changes) {
+            this.cursor = cursor;
+            this.changes = changes;
+            this.cursor.next();
+            this.change = nextChange();
+        }
+
+        protected TransferInputImpl nextChange() {
+            if (!changes.hasNext()) {
+                return null;
+            }
+            String[] row = changes.next();
+            final long from;
+            final long to;
+            if (row.length < 6
+                    || (from = IpUtil.parseLong(row[0])) < 0
+                    || (to = IpUtil.parseLong(row[1])) < 0) {
+                throw new RuntimeException("Bad changelog row: " + CsvUtil.toCsvString((Object[]) row));
+            }
+            TransferInputImpl result = new TransferInputImpl();
+            result.setFrom(from);
+            result.setTo(to);
+            result.setCountry(emptyToNull(row[2]));
+            result.setIsp(emptyToNull(row[3]));
+            result.setProvince(emptyToNull(row[4]));
+            result.setCity(emptyToNull(row[5]));
+            // compare with the last change, position lags behind by one change
+            if (result.getFrom() <= lastTo || result.getFrom() > result.getTo()) {
+                throw new RuntimeException(StringUtil.format("Changelog not in order, at: {}", row[0]));
+            }
+            lastTo = result.getTo();
+            return result;
+        }
+
+        protected static String emptyToNull(String str) {
+            return str == null || str.isEmpty() ? null : str;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position <= IpUtil.IP_MAX;
+        }
+
+        @Override
+        public TransferInput next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final TransferInputImpl result;
+            if (change != null && change.getFrom() <= position) {
+                result = change;
+                change = nextChange();
+            } else {
+                long end = cursor.getTo();
+                if (change != null && change.getFrom() <= end) {
+                    end = change.getFrom() - 1;
+                }
+                IpSeeker.Area area = cursor.getArea();
+                result = new TransferInputImpl();
+                result.setFrom(position);
+                result.setTo(end);
+                result.setCountry(area.getCountry());
+                result.setIsp(area.getIsp());
+                result.setProvince(area.getProvince());
+                result.setCity(area.getCity());
+            }
+            position = result.getTo() + 1;
+            while (cursor.getTo() < position && cursor.next()) {
+                // skip replaced ranges
+            }
+            return result;
+        }
+    }
+}
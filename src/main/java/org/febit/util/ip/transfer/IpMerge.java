@@ -0,0 +1,263 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.ip.transfer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.febit.lang.Iter;
+import org.febit.lang.iter.BaseIter;
+import org.febit.util.StringUtil;
+import org.febit.util.ip.IpSeeker;
+import org.febit.util.ip.IpUtil;
+import org.febit.util.ip.Mon17IpSeeker;
+
+/**
+ * Merge several IP databases into one, with precedence of sources for each field.
+ *
+ * For each field, value is taken from the first source (in precedence) which has a non-empty value. Sources should
+ * be in ascending order, gaps are allowed.
+ *
+ * <pre>
+ *   new IpMerge()
+ *       .add(IpSeeker.create("isp.dat"))
+ *       .add(Mon17IpSeeker.create("17monipdb.dat"))
+ *       .precedence(IpMerge.ISP, 1, 0)
+ *       .emit("merged.dat");
+ * </pre>
+ *
+ * @author zqq90
+ */
+public class IpMerge {
+
+    public static final int COUNTRY = 0;
+    public static final int ISP = 1;
+    public static final int PROVINCE = 2;
+    public static final int CITY = 3;
+
+    protected final List<Iterator<? extends TransferInput>> sources = new ArrayList<>();
+    protected final int[][] precedences = new int[4][];
+
+    /**
+     * Add source.
+     *
+     * @param source ranges in ascending order
+     * @return this
+     */
+    public IpMerge add(Iterator<? extends TransferInput> source) {
+        this.sources.add(source);
+        return this;
+    }
+
+    public IpMerge add(IpSeeker seeker) {
+        return add(createInput(seeker));
+    }
+
+    /**
+     * Add 17mon source, unit is used as isp.
+     *
+     * @param seeker
+     * @return this
+     */
+    public IpMerge add(Mon17IpSeeker seeker) {
+        return add(createInput(seeker));
+    }
+
+    /**
+     * Set precedence of given field, only listed sources are used.
+     *
+     * @param field COUNTRY, ISP, PROVINCE or CITY
+     * @param sourceIndexes index of sources by the order of adding, default is all sources in that order
+     * @return this
+     */
+    public IpMerge precedence(int field, int... sourceIndexes) {
+        this.precedences[field] = sourceIndexes;
+        return this;
+    }
+
+    /**
+     * Merge and emit to a file in febit format.
+     *
+     * @param outFile
+     * @throws IOException
+     */
+    public void emit(String outFile) throws IOException {
+        emit(outFile, false);
+    }
+
+    public void emit(String outFile, boolean prefixIndex) throws IOException {
+        try (Transfer transfer = new Transfer(prefixIndex)) {
+            transfer.read(merge());
+            transfer.emit(outFile);
+        }
+    }
+
+    /**
+     * Merged ranges, continuous from 0.0.0.0 to 255.255.255.255, can only be called once.
+     *
+     * @return
+     */
+    public Iter<TransferInput> merge() {
+        final int count = this.sources.size();
+        final int[][] resolved = new int[4][];
+        for (int field = 0; field < 4; field++) {
+            int[] indexes = this.precedences[field];
+            if (indexes == null) {
+                indexes = new int[count];
+                for (int i = 0; i < count; i++) {
+                    indexes[i] = i;
+                }
+            }
+            for (int index : indexes) {
+                if (index < 0 || index >= count) {
+                    throw new IllegalArgumentException("Source not found: " + index);
+                }
+            }
+            resolved[field] = indexes;
+        }
+        return new MergeIter(new ArrayList<>(this.sources), resolved);
+    }
+
+    public static Iter<TransferInput> createInput(final IpSeeker seeker) {
+        final IpSeeker.Cursor cursor = seeker.cursor();
+        return new BaseIter<TransferInput>() {
+
+            boolean hasNext = cursor.next();
+
+            @Override
+            public boolean hasNext() {
+                return hasNext;
+            }
+
+            @Override
+            public TransferInput next() {
+                if (!hasNext) {
+                    throw new NoSuchElementException();
+                }
+                final IpSeeker.Area area = cursor.getArea();
+                final TransferInput result = new TransferInputImpl(cursor.getFrom(), cursor.getTo(),
+                        area.getCountry(), area.getIsp(), area.getProvince(), area.getCity());
+                hasNext = cursor.next();
+                return result;
+            }
+        };
+    }
+
+    public static Iter<TransferInput> createInput(final Mon17IpSeeker seeker) {
+        final Iterator<Mon17IpSeeker.LocationIP> iter = seeker.createIterator();
+        return new BaseIter<TransferInput>() {
+
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public TransferInput next() {
+                final Mon17IpSeeker.LocationIP location = iter.next();
+                return new TransferInputImpl(location.getStart(), location.getEnd(),
+                        location.getCountry(), location.getUnit(), location.getProvince(), location.getCity());
+            }
+        };
+    }
+
+    protected static String getField(TransferInput input, int field) {
+        switch (field) {
+            case COUNTRY:
+                return input.getCountry();
+            case ISP:
+                return input.getIsp();
+            case PROVINCE:
+                return input.getProvince();
+            case CITY:
+                return input.getCity();
+            default:
+                throw new IllegalArgumentException("Unknown field: " + field);
+        }
+    }
+
+    protected static class MergeIter extends BaseIter<TransferInput> {
+
+        protected final List<Iterator<? extends TransferInput>> sources;
+        protected final int[][] precedences;
+        protected final TransferInput[] currents;
+        protected long position;
+
+        protected MergeIter(List<Iterator<? extends TransferInput>> sources, int[][] precedences) {
+            this.sources = sources;
+            this.precedences = precedences;
+            this.currents = new TransferInput[sources.size()];
+            for (int i = 0; i < this.currents.length; i++) {
+                advance(i);
+            }
+        }
+
+        /**
+         * Move source to the first range which not ends before position.
+         */
+        protected void advance(int index) {
+            final Iterator<? extends TransferInput> source = this.sources.get(index);
+            TransferInput current = this.currents[index];
+            while (current == null || current.getTo() < this.position) {
+                if (!source.hasNext()) {
+                    current = null;
+                    break;
+                }
+                final TransferInput next = source.next();
+                if (next.getFrom() > next.getTo()) {
+                    // empty range
+                    continue;
+                }
+                if (current != null && next.getFrom() <= current.getTo()) {
+                    throw new RuntimeException(StringUtil.format("Source {} not in order, at: {}",
+                            index, IpUtil.toString(next.getFrom())));
+                }
+                current = next;
+            }
+            this.currents[index] = current;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position <= IpUtil.IP_MAX;
+        }
+
+        @Override
+        public TransferInput next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final long from = this.position;
+            final TransferInput[] myCurrents = this.currents;
+            long to = IpUtil.IP_MAX;
+            for (TransferInput current : myCurrents) {
+                if (current == null) {
+                    continue;
+                }
+                to = current.getFrom() <= from
+                        ? Math.min(to, current.getTo())
+                        : Math.min(to, current.getFrom() - 1);
+            }
+            final String[] values = new String[4];
+            for (int field = 0; field < 4; field++) {
+                for (int index : this.precedences[field]) {
+                    final TransferInput current = myCurrents[index];
+                    if (current == null || current.getFrom() > from) {
+                        continue;
+                    }
+                    final String value = getField(current, field);
+                    if (value != null && !value.isEmpty()) {
+                        values[field] = value;
+                        break;
+                    }
+                }
+            }
+            this.position = to + 1;
+            for (int i = 0; i < myCurrents.length; i++) {
+                advance(i);
+            }
+            return new TransferInputImpl(from, to, values[COUNTRY], values[ISP], values[PROVINCE], values[CITY]);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.ip.transfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import org.febit.util.StringUtil;
+import org.febit.util.ip.IpUtil;
+
+/**
+ * Transfer IPv6 ranges to the format of {@link org.febit.util.ip.Ipv6Seeker}.
+ *
+ * @author zqq90
+ */
+public class Ipv6Transfer {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(Ipv6Transfer.class);
+
+    /**
+     * 3 long: endHigh, endLow, key.
+     */
+    protected static final int ENTRY_SIZE = 24;
+    protected static final int HEAD_SIZE = 12;
+
+    protected static boolean lessThan(long high1, long low1, long high2, long low2) {
+        if (high1 != high2) {
+            return (high1 ^ Long.MIN_VALUE) < (high2 ^ Long.MIN_VALUE);
+        }
+        return (low1 ^ Long.MIN_VALUE) < (low2 ^ Long.MIN_VALUE);
+    }
+
+    protected final LinkedHashMap<String, Integer> dict;
+    protected ByteBuffer ranges;
+    protected int totalSize;
+
+    /**
+     * Start of the next range, invalid if finished.
+     */
+    protected long nextHigh;
+    protected long nextLow;
+    protected boolean finished;
+
+    /**
+     * Pending range, maybe combined with the next one.
+     */
+    protected boolean pending;
+    protected long pendingHigh;
+    protected long pendingLow;
+    protected long pendingKey;
+
+    public Ipv6Transfer() {
+        this.dict = new LinkedHashMap<>(1000);
+        this.dict.put("None", 0);
+        this.ranges = ByteBuffer.allocate(ENTRY_SIZE * 4096);
+    }
+
+    public int getTotalSize() {
+        return totalSize;
+    }
+
+    public int getDictSize() {
+        return dict.size();
+    }
+
+    protected int resoveDictIndex(String string) {
+        if (string == null) {
+            return 0;
+        }
+        string = string.trim();
+        if (string.isEmpty()) {
+            return 0;
+        }
+        string = StringUtil.remove(string, '\001');
+        Integer index = dict.get(string);
+        if (index == null) {
+            index = dict.size();
+            dict.put(string, index);
+        }
+        return index;
+    }
+
+    public void read(final Iterator<Ipv6TransferInput> iter) throws IOException {
+
+        while (iter.hasNext()) {
+            addEntry(iter.next());
+        }
+
+        //fix last
+        if (!this.finished) {
+            addEntry(this.nextHigh, this.nextLow, -1L, -1L, 0L);
+        }
+
+        //check size of indexer
+        if (dict.size() >= 65025) {
+            throw new RuntimeException("Failed: indexer overflow !!");
+        }
+    }
+
+    protected void addEntry(Ipv6TransferInput info) {
+        long key = (((long) resoveDictIndex(info.getCountry())) << 48)
+                | (((long) resoveDictIndex(info.getIsp())) << 32)
+                | (((long) resoveDictIndex(info.getProvince())) << 16)
+                | ((long) resoveDictIndex(info.getCity()));
+        addEntry(info.getFromHigh(), info.getFromLow(), info.getToHigh(), info.getToLow(), key);
+    }
+
+    protected void addEntry(long fromHigh, long fromLow, long toHigh, long toLow, long key) {
+        if (lessThan(toHigh, toLow, fromHigh, fromLow)) {
+            throw new RuntimeException(StringUtil.format("from > to : {} > {} ",
+                    IpUtil.toString(fromHigh, fromLow), IpUtil.toString(toHigh, toLow)));
+        }
+        if (this.finished || lessThan(fromHigh, fromLow, this.nextHigh, this.nextLow)) {
+            throw new RuntimeException(StringUtil.format("Not increated, except {}, but got {}",
+                    this.finished ? "end" : IpUtil.toString(this.nextHigh, this.nextLow),
+                    IpUtil.toString(fromHigh, fromLow)));
+        }
+        if (fromHigh != this.nextHigh || fromLow != this.nextLow) {
+            //fix lost part
+            push(fromLow != 0 ? fromHigh : fromHigh - 1, fromLow - 1, 0L);
+        }
+        push(toHigh, toLow, key);
+
+        //END
+        if (toHigh == -1L && toLow == -1L) {
+            this.finished = true;
+        } else {
+            this.nextLow = toLow + 1;
+            this.nextHigh = toLow == -1L ? toHigh + 1 : toHigh;
+        }
+    }
+
+    protected void push(long toHigh, long toLow, long key) {
+        //判断是否可以合并
+        if (pending && key == pendingKey) {
+            pendingHigh = toHigh;
+            pendingLow = toLow;
+            return;
+        }
+        writePending();
+        pending = true;
+        pendingHigh = toHigh;
+        pendingLow = toLow;
+        pendingKey = key;
+    }
+
+    protected void writePending() {
+        if (!pending) {
+            return;
+        }
+        ByteBuffer buf = this.ranges;
+        if (buf.remaining() < ENTRY_SIZE) {
+            ByteBuffer bigger = ByteBuffer.allocate(buf.capacity() << 1);
+            buf.flip();
+            bigger.put(buf);
+            this.ranges = buf = bigger;
+        }
+        buf.putLong(pendingHigh);
+        buf.putLong(pendingLow);
+        buf.putLong(pendingKey);
+        totalSize++;
+        pending = false;
+    }
+
+    protected byte[] encodeDict() {
+        final Charset charset = Charset.forName("UTF-8");
+        final StringBuilder buf = new StringBuilder(dict.size() * 8);
+        boolean notfirst = false;
+        for (String area : dict.keySet()) {
+            if (notfirst) {
+                buf.append('\001');
+            } else {
+                notfirst = true;
+            }
+            buf.append(area);
+        }
+        return buf.toString().getBytes(charset);
+    }
+
+    public void emit(final String outpath) throws IOException {
+
+        writePending();
+
+        final byte[] dictBytes = encodeDict();
+        final ByteBuffer head = ByteBuffer.allocate(HEAD_SIZE);
+        head.putInt(HEAD_SIZE);
+        head.putInt(HEAD_SIZE + dictBytes.length);
+        head.putInt(totalSize);
+        head.flip();
+
+        final ByteBuffer body = this.ranges.duplicate();
+        body.flip();
+
+        LOG.info("Amount of ranges: {}", totalSize);
+        LOG.info("Amount of dicts : {}", dict.size());
+
+        try (FileChannel out = FileChannel.open(Paths.get(outpath),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer[] buffers = new ByteBuffer[]{head, ByteBuffer.wrap(dictBytes), body};
+            do {
+                out.write(buffers);
+            } while (head.hasRemaining() || buffers[1].hasRemaining() || body.hasRemaining());
+        }
+    }
+}
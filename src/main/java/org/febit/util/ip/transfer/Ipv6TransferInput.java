@@ -0,0 +1,26 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.ip.transfer;
+
+/**
+ *
+ * @author zqq90
+ */
+public interface Ipv6TransferInput {
+
+    long getFromHigh();
+
+    long getFromLow();
+
+    long getToHigh();
+
+    long getToLow();
+
+    String getIsp();
+
+    String getCountry();
+
+    String getProvince();
+
+    String getCity();
+
+}
@@ -0,0 +1,109 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util.ip.transfer;
+
+import org.febit.lang.Tuple3;
+
+/**
+ *
+ * @author zqq90
+ */
+public class Ipv6TransferInputImpl implements Ipv6TransferInput {
+
+    protected long fromHigh;
+    protected long fromLow;
+    protected long toHigh;
+    protected long toLow;
+    protected String country;
+    protected String isp;
+    protected String province;
+    protected String city;
+
+    public Ipv6TransferInputImpl() {
+    }
+
+    public Ipv6TransferInputImpl(long fromHigh, long fromLow, long toHigh, long toLow, String country, String isp, String province, String city) {
+        this.fromHigh = fromHigh;
+        this.fromLow = fromLow;
+        this.toHigh = toHigh;
+        this.toLow = toLow;
+        this.isp = isp;
+
+        Tuple3<String, String, String> fixed = LocationUtil.fixLocation(country, province, city);
+        this.country = fixed._1;
+        this.province = fixed._2;
+        this.city = fixed._3;
+    }
+
+    @Override
+    public long getFromHigh() {
+        return fromHigh;
+    }
+
+    public void setFromHigh(long fromHigh) {
+        this.fromHigh = fromHigh;
+    }
+
+    @Override
+    public long getFromLow() {
+        return fromLow;
+    }
+
+    public void setFromLow(long fromLow) {
+        this.fromLow = fromLow;
+    }
+
+    @Override
+    public long getToHigh() {
+        return toHigh;
+    }
+
+    public void setToHigh(long toHigh) {
+        this.toHigh = toHigh;
+    }
+
+    @Override
+    public long getToLow() {
+        return toLow;
+    }
+
+    public void setToLow(long toLow) {
+        this.toLow = toLow;
+    }
+
+    @Override
+    public String getCountry() {
+        return country;
+    }
+
+    public void setCountry(String country) {
+        this.country = country;
+    }
+
+    @Override
+    public String getIsp() {
+        return isp;
+    }
+
+    public void setIsp(String isp) {
+        this.isp = isp;
+    }
+
+    @Override
+    public String getProvince() {
+        return province;
+    }
+
+    public void setProvince(String province) {
+        this.province = province;
+    }
+
+    @Override
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+}
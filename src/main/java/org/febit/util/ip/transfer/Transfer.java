@@ -1,23 +1,28 @@
 // Copyright (c) 2013-present, febit.org. All Rights Reserved.
 package org.febit.util.ip.transfer;
 
-import java.io.BufferedOutputStream;
-import java.io.FileOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import jodd.io.StreamUtil;
 import org.febit.util.StringUtil;
+import org.febit.util.ip.IpSeeker;
 import org.febit.util.ip.IpUtil;
 
 /**
+ *
+ * Note: segments are spooled to a temp file, close if not emitted.
  *
  * @author zqq90
  */
-public class Transfer {
+public class Transfer implements Closeable {
 
     private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(Transfer.class);
 
@@ -31,33 +36,68 @@ public class Transfer {
         return (int) (ip & 0xFFFFFF);
     }
 
-    protected static int writeInt(BufferedOutputStream out, int number) throws IOException {
-        out.write((number >>> 24) & 0xFF);
-        out.write((number >>> 16) & 0xFF);
-        out.write((number >>> 8) & 0xFF);
-        out.write(number & 0xFF);
-        return 4;
-    }
+    /**
+     * 1 int (little ip) + 4 short (dict indexes).
+     */
+    protected static final int ENTRY_SIZE = 12;
 
-    protected static int writeShort(BufferedOutputStream out, int number) throws IOException {
-        out.write((number >>> 8) & 0xFF);
-        out.write(number & 0xFF);
-        return 2;
-    }
+    /**
+     * 1 int (dict start) + 257 int (segment positions).
+     */
+    protected static final int HEAD_SIZE = 4 * 258;
+
+    /**
+     * Count of /16 prefixes.
+     */
+    protected static final int PREFIX_COUNT = 0x10000;
 
     protected final LinkedHashMap<String, Integer> dict;
-    protected final ArrayList<Entry> entrys;
+    protected final boolean prefixIndex;
     protected long last;
+    protected int totalSize;
+
+    /**
+     * Pending entry, maybe combined with the next one.
+     */
+    protected int pendingSegment = -1;
+    protected int pendingLip;
+    protected long pendingKey;
+
+    /**
+     * Encoded entries of current segment, spooled when the segment completed.
+     */
+    protected int currentSegment = -1;
+    protected ByteBuffer segmentBuffer;
+    protected final int[] segmentSizes;
+    protected Path spoolPath;
+    protected FileChannel spool;
+
+    /**
+     * Index in segment of the first entry in each /16 prefix.
+     */
+    protected final int[] prefixStarts;
+    protected int nextPrefix;
 
     public Transfer() {
-        this.entrys = new ArrayList<>(500000);
+        this(false);
+    }
+
+    /**
+     *
+     * @param prefixIndex whether to emit /16 prefix index, costs 256KB in file
+     */
+    public Transfer(boolean prefixIndex) {
+        this.prefixIndex = prefixIndex;
+        this.prefixStarts = new int[PREFIX_COUNT];
         this.dict = new LinkedHashMap<>(1000);
         this.dict.put("None", 0);
         this.last = -1L;
+        this.segmentBuffer = ByteBuffer.allocate(ENTRY_SIZE * 4096);
+        this.segmentSizes = new int[256];
     }
 
     public int getTotalSize() {
-        return entrys.size();
+        return totalSize;
     }
 
     public int getDictSize() {
@@ -66,7 +106,7 @@ public class Transfer {
 
     public void start(final String filepath, final String outpath) throws IOException {
 
-        LOG.info("Amount of entrys: {}", entrys.size());
+        LOG.info("Amount of entrys: {}", totalSize);
         LOG.info("Amount of dicts : {}", dict.size());
         emit(outpath);
         LOG.info("done!");
@@ -90,19 +130,24 @@ public class Transfer {
     }
 
     public void read(final Iterator<TransferInput> iter) throws IOException {
+        try {
+            while (iter.hasNext()) {
+                addEntry(iter.next());
+            }
 
-        while (iter.hasNext()) {
-            addEntry(iter.next());
-        }
-
-        //fix last
-        if (this.last != IpUtil.IP_MAX) {
-            addEntry(this.last + 1, IpUtil.IP_MAX, 0, 0, 0, 0);
-        }
+            //fix last
+            if (this.last != IpUtil.IP_MAX) {
+                addEntry(this.last + 1, IpUtil.IP_MAX, 0, 0, 0, 0);
+            }
 
-        //check size of indexer
-        if (dict.size() >= 65025) {
-            throw new RuntimeException("Failed: indexer overflow !!");
+            //check size of indexer
+            if (dict.size() >= 65025) {
+                throw new RuntimeException("Failed: indexer overflow !!");
+            }
+        } catch (RuntimeException e) {
+            // can't be emitted any more
+            close();
+            throw e;
         }
     }
 
@@ -136,140 +181,184 @@ public class Transfer {
         while (startSegment < toSegment) {
             //填满跨越的段
             LOG.debug("Fill segment: {}", startSegment);
-            push(new Entry(startSegment, IP_PART_MAX, country, isp, province, city));
+            push(startSegment, IP_PART_MAX, country, isp, province, city);
             startSegment++;
         }
-        push(new Entry(toSegment, toLIP, country, isp, province, city));
+        push(toSegment, toLIP, country, isp, province, city);
 
         //END
         this.last = to;
     }
 
-    protected void push(Entry entry) {
+    protected void push(int segment, int lip, int country, int isp, int province, int city) {
+        final long key = (((long) country) << 48)
+                | (((long) isp) << 32)
+                | (((long) province) << 16)
+                | ((long) city);
 
         //判断是否可以合并
-        if (!entrys.isEmpty()) {
-            Entry lastEntry = entrys.get(entrys.size() - 1);
-            if (lastEntry.canCombine(entry)) {
-                entrys.set(entrys.size() - 1, entry);
-                return;
-            }
+        if (segment == pendingSegment && key == pendingKey) {
+            pendingLip = lip;
+            return;
         }
-
-        //否则直接添加
-        entrys.add(entry);
+        //否则写出上一个
+        writePending();
+        pendingSegment = segment;
+        pendingLip = lip;
+        pendingKey = key;
     }
 
-    public void emit(final String outpath) throws IOException {
-
-        final Charset charset = Charset.forName("UTF-8");
-        final BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(outpath));
-
-        int bytesSize = 0;
-
-        int[] segmentPos = new int[256];
+    protected void writePending() {
+        if (pendingSegment < 0) {
+            return;
+        }
+        if (pendingSegment != currentSegment) {
+            //上一段已完成
+            flushSegment();
+            currentSegment = pendingSegment;
+        }
+        ByteBuffer buf = this.segmentBuffer;
+        if (buf.remaining() < ENTRY_SIZE) {
+            ByteBuffer bigger = ByteBuffer.allocate(buf.capacity() << 1);
+            buf.flip();
+            bigger.put(buf);
+            this.segmentBuffer = buf = bigger;
+        }
+        buf.putInt(pendingLip);
+        buf.putLong(pendingKey);
+
+        //prefixes start at this entry
+        final int index = segmentSizes[pendingSegment] / ENTRY_SIZE;
+        while (nextPrefix < PREFIX_COUNT
+                && (nextPrefix >>> 8) == pendingSegment
+                && ((nextPrefix & 0xFF) << 16) <= pendingLip) {
+            prefixStarts[nextPrefix++] = index;
+        }
 
-        //Header
-        bytesSize += writeInt(out, 0);
+        segmentSizes[pendingSegment] += ENTRY_SIZE;
+        totalSize++;
+        pendingSegment = -1;
+    }
 
-        //ip segment header
-        for (int i = 0; i < 257; i++) {
-            bytesSize += writeInt(out, 0);
+    protected void flushSegment() {
+        final ByteBuffer buf = this.segmentBuffer;
+        if (buf.position() == 0) {
+            return;
         }
+        buf.flip();
+        try {
+            if (spool == null) {
+                spoolPath = Files.createTempFile("febit-ip-transfer-", ".tmp");
+                spool = FileChannel.open(spoolPath, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            while (buf.hasRemaining()) {
+                spool.write(buf);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        buf.clear();
+    }
 
-        int dictStart = bytesSize;
+    protected byte[] encodeDict() {
+        final Charset charset = Charset.forName("UTF-8");
+        final StringBuilder buf = new StringBuilder(dict.size() * 8);
         boolean notfirst = false;
         for (String area : dict.keySet()) {
             if (notfirst) {
-                out.write('\001');
-                bytesSize++;
+                buf.append('\001');
             } else {
                 notfirst = true;
             }
-            byte[] bytes = area.getBytes(charset);
-            out.write(bytes);
-            bytesSize += bytes.length;
-        }
-
-        LOG.info("head end size: {}", bytesSize);
-
-        segmentPos[0] = bytesSize;
-
-        int currSegment = 0;
-
-        for (Entry entry : entrys) {
-            if (entry.segment != currSegment) {
-                currSegment = entry.segment;
-                segmentPos[currSegment] = bytesSize;
-            }
-
-            bytesSize += writeInt(out, entry.lip);
-
-            bytesSize += writeShort(out, entry.country);
-            bytesSize += writeShort(out, entry.isp);
-
-            bytesSize += writeShort(out, entry.province);
-            bytesSize += writeShort(out, entry.city);
+            buf.append(area);
         }
+        return buf.toString().getBytes(charset);
+    }
 
-        StreamUtil.close(out);
-
-        try (RandomAccessFile file = new RandomAccessFile(outpath, "rw")) {
-            //Head start
-            file.writeInt(dictStart);
-            //segmentPos
-            for (int pos : segmentPos) {
-                file.writeInt(pos);
-            }
-            //last segment end pos
-            file.writeInt(bytesSize);
+    /**
+     * Write database to given path, in the compact format.
+     *
+     * Note: could only emit once.
+     *
+     * @see CompactTransfer
+     * @param outpath
+     * @throws IOException
+     */
+    public void emitCompact(final String outpath) throws IOException {
+        final Path plain = Files.createTempFile("febit-ip-", ".dat");
+        try {
+            emit(plain.toString());
+            CompactTransfer.transfer(IpSeeker.create(plain), outpath);
+        } finally {
+            Files.deleteIfExists(plain);
         }
     }
 
-    protected static class Entry {
-
-        public final int segment;
-        public final int lip;
-        public final int country;
-        public final int isp;
-        public final int province;
-        public final int city;
-
-        public Entry(int segment, int lip, int country, int isp, int province, int city) {
-            this.segment = segment;
-            this.lip = lip;
-            this.country = country;
-            this.isp = isp;
-            this.province = province;
-            this.city = city;
-        }
+    /**
+     * Write database to given path.
+     *
+     * Note: could only emit once, the spooled segments are removed after.
+     *
+     * @param outpath
+     * @throws IOException
+     */
+    public void emit(final String outpath) throws IOException {
 
-        public boolean canCombine(Entry other) {
+        writePending();
+        flushSegment();
 
-            if (this.segment != other.segment) {
-                return false;
+        final byte[] dictBytes = encodeDict();
+
+        //Header: dict start, 256 segments and the end position, then prefix index if enabled
+        final ByteBuffer head = ByteBuffer.allocate(prefixIndex ? HEAD_SIZE + 4 * PREFIX_COUNT : HEAD_SIZE);
+        final int dictStart = head.capacity();
+        head.putInt(dictStart);
+        int pos = dictStart + dictBytes.length;
+        LOG.info("head end size: {}", pos);
+        for (int size : segmentSizes) {
+            head.putInt(pos);
+            pos += size;
+        }
+        head.putInt(pos);
+        if (prefixIndex) {
+            if (nextPrefix != PREFIX_COUNT) {
+                throw new IllegalStateException("Prefix index is not completed, read all before emit");
             }
-            if (!isSameLocation(other)) {
-                return false;
+            for (int start : prefixStarts) {
+                head.putInt(start);
             }
-            return true;
         }
+        head.flip();
 
-        public boolean isSameLocation(Entry other) {
-            if (this.isp != other.isp) {
-                return false;
-            }
-            if (this.country != other.country) {
-                return false;
+        try (FileChannel out = FileChannel.open(Paths.get(outpath),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer[] heads = new ByteBuffer[]{head, ByteBuffer.wrap(dictBytes)};
+            while (heads[1].hasRemaining()) {
+                out.write(heads);
             }
-            if (this.province != other.province) {
-                return false;
+            if (spool != null) {
+                final long size = spool.size();
+                long offset = 0;
+                while (offset < size) {
+                    offset += spool.transferTo(offset, size - offset, out);
+                }
             }
-            if (this.city != other.city) {
-                return false;
-            }
-            return true;
+        } finally {
+            close();
         }
     }
 
+    /**
+     * Remove the spooled segments, emitted or not.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (spool != null) {
+            spool.close();
+            spool = null;
+        }
+    }
 }
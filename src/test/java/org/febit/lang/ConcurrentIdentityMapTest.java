@@ -0,0 +1,113 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.lang;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author zqq90
+ */
+public class ConcurrentIdentityMapTest {
+
+    @Test
+    public void test() {
+        final ConcurrentIdentityMap<String> map = new ConcurrentIdentityMap<>(2);
+        final Object[] keys = new Object[1000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new Object();
+            assertEquals(map.putIfAbsent(keys[i], "v" + i), "v" + i);
+        }
+        assertEquals(map.size(), 1000);
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(map.putIfAbsent(keys[i], "x"), "v" + i);
+            if (i % 2 == 0) {
+                map.put(keys[i], "p" + i);
+            } else {
+                map.remove(keys[i]);
+            }
+        }
+        assertEquals(map.size(), 500);
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(map.get(keys[i]), i % 2 == 0 ? "p" + i : null);
+            assertEquals(map.unsafeGet(keys[i]), map.get(keys[i]));
+        }
+        map.remove(new Object());
+        assertEquals(map.size(), 500);
+    }
+
+    @Test
+    public void longMapTest() {
+        final ConcurrentLongMap<String> map = new ConcurrentLongMap<>(2);
+        for (int i = 0; i < 1000; i++) {
+            // keys differ only in high bits
+            assertEquals(map.putIfAbsent(((long) i) << 48, "v" + i), "v" + i);
+        }
+        assertEquals(map.size(), 1000);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(map.putIfAbsent(((long) i) << 48, "x"), "v" + i);
+            assertEquals(map.get(((long) i) << 48), "v" + i);
+        }
+        assertNull(map.get(1L));
+        final long[] keys = map.exportKeys();
+        Arrays.sort(keys);
+        assertEquals(keys.length, 1000);
+        assertEquals(keys[999], 999L << 48);
+    }
+
+    @Test
+    public void concurrentTest() throws Exception {
+        final ConcurrentIdentityMap<Object> map = new ConcurrentIdentityMap<>(2);
+        final ClassMap<Object> classMap = new ClassMap<>(2);
+        final Object[] keys = new Object[20000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new Object();
+        }
+        final Class[] classes = {String.class, Integer.class, Long.class, Object.class, List.class, Map.class,
+            ArrayList.class, ClassMap.class, ConcurrentIdentityMap.class, Thread.class};
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int offset = t * 997;
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int errors = 0;
+                        for (int i = 0; i < keys.length; i++) {
+                            final Object key = keys[(i + offset) % keys.length];
+                            // value is the key itself, so that a wrong value could be detected
+                            if (map.putIfAbsent(key, key) != key || map.get(key) != key) {
+                                errors++;
+                            }
+                            final Class cls = classes[i % classes.length];
+                            if (classMap.putIfAbsent(cls, cls) != cls || classMap.get(cls) != cls) {
+                                errors++;
+                            }
+                        }
+                        return errors;
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(future.get().intValue(), 0);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(map.size(), keys.length);
+        assertEquals(classMap.size(), classes.length);
+        for (Object key : keys) {
+            assertSame(map.get(key), key);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.lang;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author zqq90
+ */
+public class IntMapTest {
+
+    @Test
+    public void intMapTest() {
+        final IntMap<Integer> map = new IntMap<>(4);
+        final Map<Integer, Integer> expected = new HashMap<>();
+        final Random random = new Random(21);
+        for (int i = 0; i < 200000; i++) {
+            // small range, so that clusters are long and removing shifts a lot
+            final int key = i % 3 == 0 ? random.nextInt() : random.nextInt(4096) - 64;
+            switch (random.nextInt(4)) {
+                case 0:
+                    map.remove(key);
+                    expected.remove(key);
+                    break;
+                case 1:
+                    Integer old = expected.get(key);
+                    assertEquals(map.putIfAbsent(key, i), old != null ? old : Integer.valueOf(i));
+                    if (old == null) {
+                        expected.put(key, i);
+                    }
+                    break;
+                default:
+                    map.put(key, i);
+                    expected.put(key, i);
+            }
+            assertEquals(map.get(key), expected.get(key));
+            assertEquals(map.containsKey(key), expected.containsKey(key));
+        }
+        assertEquals(map.size(), expected.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(map.get(entry.getKey()), entry.getValue());
+        }
+
+        int count = 0;
+        for (IntMap.Entry<Integer> entry : map) {
+            assertEquals(entry.getValue(), expected.get(entry.getKey()));
+            count++;
+        }
+        assertEquals(count, expected.size());
+
+        final int[] keys = map.exportKeys();
+        Arrays.sort(keys);
+        final int[] expectedKeys = new int[expected.size()];
+        int i = 0;
+        for (Integer key : expected.keySet()) {
+            expectedKeys[i++] = key;
+        }
+        Arrays.sort(expectedKeys);
+        assertEquals(keys, expectedKeys);
+
+        map.clear();
+        assertEquals(map.size(), 0);
+        assertFalse(map.containsKey(0));
+        assertFalse(map.iterator().hasNext());
+    }
+
+    @Test
+    public void patternedKeysTest() {
+        // aligned keys, all in one slot without spreading
+        final IntMap<Integer> intMap = new IntMap<>();
+        final LongMap<Integer> longMap = new LongMap<>();
+        for (int i = 0; i < 100000; i++) {
+            intMap.put(i << 12, i);
+            longMap.put(((long) i) << 40, i);
+        }
+        for (int i = 0; i < 100000; i++) {
+            assertEquals(intMap.get(i << 12), Integer.valueOf(i));
+            assertEquals(longMap.get(((long) i) << 40), Integer.valueOf(i));
+        }
+        assertEquals(intMap.size(), 100000);
+        assertEquals(longMap.size(), 100000);
+
+        // murmur3 finalizer is a bijection, no collision in full hash
+        assertEquals(IntMap.hash(0), 0);
+        assertNotEquals(IntMap.hash(1 << 16), IntMap.hash(2 << 16));
+        assertEquals(LongMap.hash(0L), 0L);
+        assertNotEquals(LongMap.hash(1L << 40) & 0xFFFF, LongMap.hash(2L << 40) & 0xFFFF);
+    }
+
+    @Test
+    public void longMapTest() {
+        final LongMap<Long> map = new LongMap<>(4);
+        final Map<Long, Long> expected = new HashMap<>();
+        final Random random = new Random(22);
+        for (int i = 0; i < 200000; i++) {
+            // keys differ only in high bits, as packed keys of IpSeeker
+            final long key = i % 3 == 0
+                    ? random.nextLong()
+                    : ((long) random.nextInt(1024) << 48) | random.nextInt(64);
+            switch (random.nextInt(4)) {
+                case 0:
+                    map.remove(key);
+                    expected.remove(key);
+                    break;
+                case 1:
+                    Long old = expected.get(key);
+                    assertEquals(map.putIfAbsent(key, (long) i), old != null ? old : Long.valueOf(i));
+                    if (old == null) {
+                        expected.put(key, (long) i);
+                    }
+                    break;
+                default:
+                    map.put(key, (long) i);
+                    expected.put(key, (long) i);
+            }
+            assertEquals(map.get(key), expected.get(key));
+            assertEquals(map.containsKey(key), expected.containsKey(key));
+        }
+        assertEquals(map.size(), expected.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(map.get(entry.getKey()), entry.getValue());
+        }
+
+        final long[] keys = map.exportKeys();
+        Arrays.sort(keys);
+        final long[] expectedKeys = new long[expected.size()];
+        int i = 0;
+        for (Long key : expected.keySet()) {
+            expectedKeys[i++] = key;
+        }
+        Arrays.sort(expectedKeys);
+        assertEquals(keys, expectedKeys);
+
+        map.clear();
+        assertEquals(map.size(), 0);
+        assertNull(map.get(0L));
+    }
+}
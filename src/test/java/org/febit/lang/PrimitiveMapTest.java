@@ -0,0 +1,163 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.lang;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author zqq90
+ */
+public class PrimitiveMapTest {
+
+    @Test
+    public void intIntMapTest() {
+        final IntIntMap map = new IntIntMap(4);
+        final Map<Integer, Integer> expected = new HashMap<>();
+        final Random random = new Random(23);
+        for (int i = 0; i < 100000; i++) {
+            final int key = random.nextInt(2048) - 16;
+            switch (random.nextInt(5)) {
+                case 0:
+                    Integer old = expected.remove(key);
+                    assertEquals(map.remove(key), old != null ? old.intValue() : 0);
+                    break;
+                case 1:
+                    map.put(key, i);
+                    expected.put(key, i);
+                    break;
+                case 2:
+                    old = expected.get(key);
+                    assertEquals(map.putIfAbsent(key, i), old != null ? old.intValue() : i);
+                    if (old == null) {
+                        expected.put(key, i);
+                    }
+                    break;
+                case 3:
+                    old = expected.get(key);
+                    expected.put(key, (old != null ? old : 0) + 1);
+                    assertEquals(map.incrementAndGet(key), expected.get(key).intValue());
+                    break;
+                default:
+                    old = expected.get(key);
+                    expected.put(key, (old != null ? old : 0) - 3);
+                    assertEquals(map.addTo(key, -3), expected.get(key).intValue());
+            }
+            assertEquals(map.containsKey(key), expected.containsKey(key));
+            assertEquals(map.get(key, -1), expected.containsKey(key) ? expected.get(key) : -1);
+        }
+        assertEquals(map.size(), expected.size());
+        final int[] keys = map.exportKeys();
+        final int[] values = map.exportValues();
+        assertEquals(keys.length, expected.size());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(values[i], expected.get(keys[i]).intValue());
+        }
+        map.clear();
+        assertEquals(map.size(), 0);
+        assertEquals(map.get(0), 0);
+    }
+
+    @Test
+    public void intLongMapTest() {
+        final IntLongMap map = new IntLongMap(4);
+        final Map<Integer, Long> expected = new HashMap<>();
+        final Random random = new Random(25);
+        for (int i = 0; i < 100000; i++) {
+            final int key = random.nextInt(2048) - 16;
+            final long value = ((long) i) << 32;
+            switch (random.nextInt(5)) {
+                case 0:
+                    Long old = expected.remove(key);
+                    assertEquals(map.remove(key), old != null ? old.longValue() : 0L);
+                    break;
+                case 1:
+                    map.put(key, value);
+                    expected.put(key, value);
+                    break;
+                case 2:
+                    old = expected.get(key);
+                    assertEquals(map.putIfAbsent(key, value), old != null ? old.longValue() : value);
+                    if (old == null) {
+                        expected.put(key, value);
+                    }
+                    break;
+                case 3:
+                    old = expected.get(key);
+                    expected.put(key, (old != null ? old : 0L) + 1);
+                    assertEquals(map.incrementAndGet(key), expected.get(key).longValue());
+                    break;
+                default:
+                    old = expected.get(key);
+                    expected.put(key, (old != null ? old : 0L) + value);
+                    assertEquals(map.addTo(key, value), expected.get(key).longValue());
+            }
+            assertEquals(map.containsKey(key), expected.containsKey(key));
+            assertEquals(map.get(key, -1L), expected.containsKey(key) ? expected.get(key) : -1L);
+        }
+        assertEquals(map.size(), expected.size());
+        final int[] keys = map.exportKeys();
+        final long[] values = map.exportValues();
+        assertEquals(keys.length, expected.size());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(values[i], expected.get(keys[i]).longValue());
+        }
+        map.clear();
+        assertEquals(map.size(), 0);
+        assertFalse(map.containsKey(0));
+        assertEquals(map.get(1), 0L);
+    }
+
+    @Test
+    public void longLongMapTest() {
+        final LongLongMap map = new LongLongMap(4);
+        final Map<Long, Long> expected = new HashMap<>();
+        final Random random = new Random(24);
+        for (int i = 0; i < 100000; i++) {
+            // keys differ only in high bits, as minute marks of ids
+            final long key = ((long) random.nextInt(2048) - 16) << 40;
+            switch (random.nextInt(5)) {
+                case 0:
+                    Long old = expected.remove(key);
+                    assertEquals(map.remove(key), old != null ? old.longValue() : 0L);
+                    break;
+                case 1:
+                    map.put(key, i);
+                    expected.put(key, (long) i);
+                    break;
+                case 2:
+                    old = expected.get(key);
+                    assertEquals(map.putIfAbsent(key, i), old != null ? old.longValue() : i);
+                    if (old == null) {
+                        expected.put(key, (long) i);
+                    }
+                    break;
+                case 3:
+                    old = expected.get(key);
+                    expected.put(key, (old != null ? old : 0L) + 1);
+                    assertEquals(map.incrementAndGet(key), expected.get(key).longValue());
+                    break;
+                default:
+                    old = expected.get(key);
+                    expected.put(key, (old != null ? old : 0L) + i);
+                    assertEquals(map.addTo(key, i), expected.get(key).longValue());
+            }
+            assertEquals(map.containsKey(key), expected.containsKey(key));
+            assertEquals(map.get(key, -1L), expected.containsKey(key) ? expected.get(key) : -1L);
+        }
+        assertEquals(map.size(), expected.size());
+        final long[] keys = map.exportKeys();
+        final long[] values = map.exportValues();
+        assertEquals(keys.length, expected.size());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(values[i], expected.get(keys[i]).longValue());
+        }
+        map.clear();
+        assertEquals(map.size(), 0);
+        assertFalse(map.containsKey(0L));
+        assertEquals(map.get(1L << 40), 0L);
+    }
+}
@@ -0,0 +1,58 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.lang;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.febit.convert.Convert;
+import org.febit.convert.TypeConverter;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author zqq90
+ */
+public class TypeCacheTest {
+
+    @Test
+    public void test() {
+        final AtomicInteger resolved = new AtomicInteger();
+        final TypeCache<String> cache = TypeCache.create(new Function1<String, Class>() {
+            @Override
+            public String call(Class type) {
+                resolved.incrementAndGet();
+                return type == Void.class ? null : type.getSimpleName() + resolved.get();
+            }
+        });
+
+        assertEquals(cache.get(String.class), "String1");
+        assertEquals(cache.get(String.class), "String1");
+        assertEquals(cache.get(Integer.class), "Integer2");
+        assertNull(cache.get(Void.class));
+        assertNull(cache.get(Void.class));
+        assertEquals(resolved.get(), 3);
+
+        cache.remove(String.class);
+        assertEquals(cache.get(String.class), "String4");
+        assertEquals(resolved.get(), 4);
+    }
+
+    static class Point {
+    }
+
+    @Test
+    public void convertTest() {
+        assertNull(Convert.getConverter(Point.class));
+        assertEquals(Convert.convert("1,2", Point.class), "1,2");
+
+        final Point point = new Point();
+        Convert.register(Point.class, new TypeConverter<Point>() {
+            @Override
+            public Point convert(String raw, Class<Point> type) {
+                return point;
+            }
+        });
+        // registering drops the cached miss
+        assertSame(Convert.convert("1,2", Point.class), point);
+        assertEquals(Convert.convert("3", int.class), 3);
+    }
+}
@@ -0,0 +1,90 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author zqq90
+ */
+public class CounterTest {
+
+    private static <T> List<T> keys(Iterator<Map.Entry<T, Integer>> iter) {
+        final List<T> list = new ArrayList<>();
+        while (iter.hasNext()) {
+            list.add(iter.next().getKey());
+        }
+        return list;
+    }
+
+    @Test
+    public void test() {
+        final Counter<String> counter = new Counter<>(2);
+        for (int i = 0; i < 1000; i++) {
+            counter.inc("k" + (i % 100), i % 100 < 50 ? 1 : 2);
+        }
+        counter.inc(null);
+        counter.inc("z", 20);
+        counter.inc("z", 5);
+
+        assertEquals(counter.size(), 102);
+        assertEquals(counter.getCount("k1"), 10);
+        assertEquals(counter.getCount("k99"), 20);
+        assertEquals(counter.getCount("z"), 25);
+        assertEquals(counter.getCount(null), 1);
+        assertEquals(counter.getCount("none"), 0);
+
+        // in order of first counted
+        final List<String> keys = keys(counter.iterator());
+        assertEquals(keys.size(), 102);
+        assertEquals(keys.get(0), "k0");
+        assertEquals(keys.get(99), "k99");
+        assertEquals(keys.get(100), null);
+        assertEquals(keys.get(101), "z");
+
+        // stable by count
+        final List<String> desc = keys(counter.descIterator());
+        assertEquals(desc.get(0), "z");
+        assertEquals(desc.get(1), "k50");
+        assertEquals(desc.get(51), "k0");
+        assertEquals(desc.get(101), null);
+        final List<String> asc = keys(counter.ascIterator());
+        assertEquals(asc.get(0), null);
+        assertEquals(asc.get(1), "k0");
+        assertEquals(asc.get(101), "z");
+    }
+
+    @Test
+    public void mutableTest() {
+        final Counter<String> counter = new Counter<>();
+        for (int i = 0; i < 40; i++) {
+            counter.inc("k" + i, i);
+        }
+        for (Iterator<Map.Entry<String, Integer>> iter = counter.iterator(); iter.hasNext();) {
+            final Map.Entry<String, Integer> entry = iter.next();
+            if (entry.getValue() % 2 == 0) {
+                iter.remove();
+            } else {
+                final Integer old = entry.getValue();
+                assertEquals(entry.setValue(old * 10), old);
+                assertEquals(entry.getValue(), Integer.valueOf(old * 10));
+            }
+        }
+        assertEquals(counter.size(), 20);
+        assertEquals(counter.getCount("k0"), 0);
+        assertEquals(counter.getCount("k1"), 10);
+        assertEquals(counter.getCount("k39"), 390);
+        final List<String> keys = keys(counter.iterator());
+        assertEquals(keys.get(0), "k1");
+        assertEquals(keys.get(19), "k39");
+
+        // counted again after removed
+        assertEquals(counter.inc("k0"), 1);
+        assertEquals(keys(counter.iterator()).get(20), "k0");
+    }
+}
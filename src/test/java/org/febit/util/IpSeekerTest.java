@@ -0,0 +1,623 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.febit.lang.Iter;
+import org.febit.util.agent.FileReloadAgent;
+import org.febit.util.ip.CompactIpSeeker;
+import org.febit.util.ip.IpBlankSeeker;
+import org.febit.util.ip.IpCache;
+import org.febit.util.ip.IpSeeker;
+import org.febit.util.ip.IpUtil;
+import org.febit.util.ip.Mon17IpSeeker;
+import org.febit.util.ip.transfer.CompactTransfer;
+import org.febit.util.ip.transfer.IpCidrExport;
+import org.febit.util.ip.transfer.IpDiff;
+import org.febit.util.ip.transfer.IpMerge;
+import org.febit.util.ip.transfer.Transfer;
+import org.febit.util.ip.transfer.TransferInput;
+import org.febit.util.ip.transfer.TransferInputImpl;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author zqq90
+ */
+public class IpSeekerTest {
+
+    /**
+     * Create ranges, country of each range is "C" + index of range.
+     */
+    static List<TransferInput> createInputs(long seed, int count) {
+        final Random random = new Random(seed);
+        final List<TransferInput> inputs = new ArrayList<>(count);
+        long from = 0;
+        for (int i = 0; i < count && from <= IpUtil.IP_MAX; i++) {
+            long to = i == count - 1
+                    ? IpUtil.IP_MAX
+                    : Math.min(IpUtil.IP_MAX, from + random.nextInt(i % 7 == 0 ? 0x1000000 : 0x4000));
+            inputs.add(new TransferInputImpl(from, to, "C" + i, "I" + (i % 13), "P" + (i % 31), "T" + (i % 101)));
+            from = to + 1;
+        }
+        return inputs;
+    }
+
+    static Path createDatabase(List<TransferInput> inputs) throws IOException {
+        return createDatabase(inputs, false);
+    }
+
+    static Path createDatabase(List<TransferInput> inputs, boolean prefixIndex) throws IOException {
+        File file = File.createTempFile("febit-ip-", ".dat");
+        file.deleteOnExit();
+        Transfer transfer = new Transfer(prefixIndex);
+        transfer.read(inputs.iterator());
+        transfer.emit(file.getPath());
+        return file.toPath();
+    }
+
+    static void assertLocation(IpSeeker.Location location, TransferInput expected) {
+        assertEquals(location.getCountry(), expected.getCountry());
+        assertEquals(location.getIsp(), expected.getIsp());
+        assertEquals(location.getProvince(), expected.getProvince());
+        assertEquals(location.getCity(), expected.getCity());
+    }
+
+    @Test
+    public void mappedTest() throws IOException {
+        final List<TransferInput> inputs = createInputs(42, 3000);
+        final Path path = createDatabase(inputs);
+
+        IpSeeker heap = IpSeeker.create(path);
+        IpSeeker mapped = IpSeeker.createMapped(path);
+
+        final Random random = new Random(7);
+        for (TransferInput input : inputs) {
+            long ip = input.getFrom() + (long) (random.nextDouble() * (input.getTo() - input.getFrom()));
+            assertLocation(heap.locate(ip), input);
+            assertLocation(mapped.locate(ip), input);
+            assertLocation(mapped.locate(input.getFrom()), input);
+            assertLocation(mapped.locate((int) input.getTo()), input);
+        }
+
+        int count = 0;
+        for (IpSeeker.Location location : mapped) {
+            count++;
+            assertLocation(location, inputs.get(Integer.parseInt(location.getCountry().substring(1))));
+        }
+        assertTrue(count >= inputs.size());
+    }
+
+    @Test
+    public void transferTest() throws IOException {
+        // many ranges in the first segments, more than one buffer
+        final List<TransferInput> inputs = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            inputs.add(new TransferInputImpl(i << 10, (i << 10) + 1023, "C" + (i % 3), null, "P" + i, null));
+        }
+        final IpSeeker seeker = IpSeeker.create(createDatabase(inputs));
+        assertTrue(seeker.isValid());
+        for (TransferInput input : inputs) {
+            assertLocation(seeker.locate(input.getFrom()), input);
+            assertLocation(seeker.locate(input.getTo()), input);
+        }
+        assertNull(seeker.locate(IpUtil.IP_MAX).getCountry());
+    }
+
+    @Test
+    public void prefixIndexTest() throws IOException {
+        final List<TransferInput> inputs = createInputs(48, 5000);
+        final IpSeeker plain = IpSeeker.create(createDatabase(inputs));
+        final IpSeeker built = plain.withPrefixIndex();
+        final IpSeeker stored = IpSeeker.createMapped(createDatabase(inputs, true));
+
+        assertFalse(plain.isPrefixIndexed());
+        assertTrue(built.isPrefixIndexed());
+        assertTrue(stored.isPrefixIndexed());
+        assertTrue(stored.isValid());
+
+        final Random random = new Random(48);
+        for (int i = 0; i < 100000; i++) {
+            int ip = random.nextInt();
+            long key = plain.locateKey(ip);
+            assertEquals(built.locateKey(ip), key);
+            assertEquals(stored.locateKey(ip), key);
+        }
+        for (TransferInput input : inputs) {
+            assertLocation(stored.locate(input.getFrom()), input);
+            assertLocation(stored.locate(input.getTo()), input);
+        }
+    }
+
+    @Test
+    public void diffTest() throws IOException {
+        final List<TransferInput> oldInputs = createInputs(49, 3000);
+        final List<TransferInput> newInputs = new ArrayList<>(oldInputs);
+        // change some ranges, and split one
+        for (int i = 100; i < 3000; i += 97) {
+            TransferInput input = newInputs.get(i);
+            newInputs.set(i, new TransferInputImpl(input.getFrom(), input.getTo(), "X" + i, null, input.getProvince(), null));
+        }
+        TransferInput split = newInputs.get(50);
+        newInputs.set(50, new TransferInputImpl(split.getFrom(), split.getFrom(), "S", null, null, null));
+        newInputs.add(51, new TransferInputImpl(split.getFrom() + 1, split.getTo(), split.getCountry(),
+                split.getIsp(), split.getProvince(), split.getCity()));
+
+        final IpSeeker oldSeeker = IpSeeker.create(createDatabase(oldInputs));
+        final IpSeeker newSeeker = IpSeeker.create(createDatabase(newInputs));
+
+        StringWriter changelog = new StringWriter();
+        int count = IpDiff.diff(oldSeeker, newSeeker, changelog);
+        assertEquals(count, 1 + (3000 - 100 + 96) / 97);
+
+        StringWriter empty = new StringWriter();
+        assertEquals(IpDiff.diff(newSeeker, newSeeker, empty), 0);
+        assertEquals(empty.toString(), "");
+
+        File file = File.createTempFile("febit-ip-", ".dat");
+        file.deleteOnExit();
+        Transfer transfer = new Transfer();
+        transfer.read(IpDiff.apply(oldSeeker, new StringReader(changelog.toString())));
+        transfer.emit(file.getPath());
+        final IpSeeker applied = IpSeeker.create(file.toPath());
+
+        for (TransferInput input : newInputs) {
+            assertLocation(applied.locate(input.getFrom()), input);
+            assertLocation(applied.locate(input.getTo()), input);
+        }
+        assertEquals(IpDiff.diff(newSeeker, applied, new StringWriter()), 0);
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Changelog not in order.*")
+    public void applyOverlappedTest() throws IOException {
+        final IpSeeker oldSeeker = IpSeeker.create(createDatabase(createInputs(49, 300)));
+        final String changelog = "1.0.0.0,1.0.0.255,A,,,\n"
+                + "1.0.0.128,1.0.1.0,B,,,\n";
+        final Iter<TransferInput> iter = IpDiff.apply(oldSeeker, new StringReader(changelog));
+        while (iter.hasNext()) {
+            iter.next();
+        }
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Bad changelog row.*")
+    public void applyBadRowTest() throws IOException {
+        final IpSeeker oldSeeker = IpSeeker.create(createDatabase(createInputs(49, 300)));
+        final String changelog = "1.0.0.0,1.0.0.255,A,,,\n"
+                + "1.0.1.x,1.0.2.0,B,,,\n";
+        final Iter<TransferInput> iter = IpDiff.apply(oldSeeker, new StringReader(changelog));
+        while (iter.hasNext()) {
+            iter.next();
+        }
+    }
+
+    @Test
+    public void locateKeyTest() throws IOException {
+        final List<TransferInput> inputs = createInputs(43, 2000);
+        final IpSeeker seeker = IpSeeker.createMapped(createDatabase(inputs));
+
+        for (TransferInput input : inputs) {
+            long key = seeker.locateKey((int) input.getTo());
+            assertEquals(seeker.getWord(IpSeeker.countryIndex(key)), input.getCountry());
+            assertEquals(seeker.getWord(IpSeeker.ispIndex(key)), input.getIsp());
+            assertEquals(seeker.getWord(IpSeeker.provinceIndex(key)), input.getProvince());
+            assertEquals(seeker.getWord(IpSeeker.cityIndex(key)), input.getCity());
+            assertEquals(seeker.locateKey(input.getFrom()), key);
+        }
+    }
+
+    @Test
+    public void locateAllTest() throws IOException {
+        final IpSeeker seeker = IpSeeker.create(createDatabase(createInputs(45, 3000)));
+        final Random random = new Random(45);
+        final int count = 20000;
+
+        int[] ips = new int[count];
+        long[] longIps = new long[count];
+        for (int i = 0; i < count; i++) {
+            ips[i] = random.nextInt();
+        }
+        long[] keys = new long[count];
+        long[] longKeys = new long[count];
+
+        // unsorted
+        seeker.locateAll(ips, keys);
+        for (int i = 0; i < count; i++) {
+            longIps[i] = IpUtil.int2long(ips[i]);
+            assertEquals(keys[i], seeker.locateKey(ips[i]));
+        }
+
+        // sorted
+        Arrays.sort(longIps);
+        for (int i = 0; i < count; i++) {
+            ips[i] = (int) longIps[i];
+        }
+        seeker.locateAll(ips, keys);
+        seeker.locateAll(longIps, longKeys);
+        for (int i = 0; i < count; i++) {
+            assertEquals(keys[i], seeker.locateKey(ips[i]));
+            assertEquals(longKeys[i], keys[i]);
+        }
+    }
+
+    @Test
+    public void areaTest() throws IOException {
+        final List<TransferInput> inputs = createInputs(44, 2000);
+        final IpSeeker seeker = IpSeeker.create(createDatabase(inputs));
+
+        for (TransferInput input : inputs) {
+            IpSeeker.Area area = seeker.locateArea(input.getTo());
+            assertSame(seeker.locateArea(input.getFrom()), area);
+            assertSame(seeker.locate(input.getFrom()).getArea(), area);
+            assertEquals(area.getCountry(), input.getCountry());
+            assertEquals(area.getCity(), input.getCity());
+
+            // ranges are split by segment
+            int ip = (int) input.getTo();
+            assertEquals(seeker.locateIpTo(ip), input.getTo());
+            assertEquals(seeker.locateIpFrom(ip), Math.max(input.getFrom(), input.getTo() & 0xFF000000L));
+        }
+    }
+
+    @Test
+    public void localeTest() throws IOException {
+        final List<TransferInput> inputs = createInputs(45, 2000);
+        final IpSeeker seeker = IpSeeker.create(createDatabase(inputs));
+
+        final String[] origin = seeker.getOriginDict();
+        final String[] upper = new String[origin.length];
+        final String[] partial = new String[origin.length];
+        for (int i = 1; i < origin.length; i++) {
+            upper[i] = origin[i].toUpperCase();
+            if (origin[i].startsWith("T")) {
+                partial[i] = "City-" + origin[i];
+            }
+        }
+        final IpSeeker localized = seeker.withLocales(upper, partial);
+        assertEquals(localized.getLocaleCount(), 3);
+
+        for (TransferInput input : inputs) {
+            IpSeeker.Location location = localized.locateLocalized(input.getFrom(), 0);
+            assertLocation(location, input);
+            assertSame(location.getArea(), localized.locateArea(input.getFrom()));
+
+            location = localized.locateLocalized(input.getTo(), 1);
+            assertEquals(location.getCountry(), input.getCountry().toUpperCase());
+            assertEquals(location.getCity(), input.getCity().toUpperCase());
+
+            IpSeeker.Area area = localized.locateArea((int) input.getTo(), 2);
+            assertEquals(area.getCountry(), input.getCountry());
+            assertEquals(area.getCity(), "City-" + input.getCity());
+            assertSame(localized.locateArea((int) input.getTo(), 2), area);
+            assertSame(location.getArea(), localized.locateArea((int) input.getTo(), 1));
+        }
+        assertEquals(localized.getWord(0, 1), null);
+
+        // i18n keeps locales
+        final java.util.Map<String, String> i18n = new java.util.HashMap<>();
+        i18n.put(inputs.get(1).getCountry(), "Country One");
+        final IpSeeker translated = localized.i18n(i18n);
+        assertEquals(translated.locate(inputs.get(1).getFrom()).getCountry(), "Country One");
+        assertEquals(translated.locateLocalized(inputs.get(1).getFrom(), 1).getCountry(), inputs.get(1).getCountry().toUpperCase());
+        assertEquals(translated.withPrefixIndex().getLocaleCount(), 3);
+        // areas of unchanged locales are reused
+        assertSame(translated.locateArea((int) inputs.get(1).getFrom(), 1),
+                localized.locateArea((int) inputs.get(1).getFrom(), 1));
+
+        try {
+            seeker.withLocales(new String[origin.length - 1]);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+    }
+
+    @Test
+    public void reloadTest() throws IOException {
+        final Path path = createDatabase(createInputs(46, 1000));
+        final FileReloadAgent<IpSeeker> agent = IpSeeker.createReloadAgent(path, 1000L).ensure();
+        final IpSeeker first = agent.get();
+        assertTrue(first.isValid());
+        assertFalse(agent.reload());
+
+        // replaced by a bigger one
+        Files.copy(createDatabase(createInputs(47, 2000)), path, StandardCopyOption.REPLACE_EXISTING);
+        assertTrue(agent.reload());
+        final IpSeeker second = agent.get();
+        assertNotSame(second, first);
+        assertEquals(second.locate(IpUtil.IP_MAX).getCountry(), "C1999");
+
+        // broken file, keep the old
+        Files.write(path, new byte[]{1, 2, 3});
+        assertFalse(agent.reload());
+        assertSame(agent.get(), second);
+
+        agent.close();
+    }
+
+    @Test
+    public void cacheTest() throws IOException {
+        final Path path = createDatabase(createInputs(48, 1000));
+        final FileReloadAgent<IpSeeker> agent = IpSeeker.createReloadAgent(path, 1000L).ensure();
+        final IpCache<IpSeeker, IpSeeker.Location> cache = IpCache.create(agent, 100);
+        assertEquals(cache.getCapacity(), 128);
+
+        final Random random = new Random(9);
+        final int[] hot = new int[50];
+        for (int i = 0; i < hot.length; i++) {
+            hot[i] = random.nextInt();
+        }
+        for (int round = 0; round < 20; round++) {
+            for (int ip : hot) {
+                assertEquals(cache.get(ip).getCountry(), agent.get().locate(ip).getCountry());
+            }
+            // noise
+            for (int i = 0; i < 10; i++) {
+                int ip = random.nextInt();
+                assertEquals(cache.get(ip).getCountry(), agent.get().locate(ip).getCountry());
+            }
+        }
+        assertEquals(cache.getHitCount() + cache.getMissCount(), 20 * 60);
+        assertTrue(cache.getHitCount() > 20 * 40, "hits: " + cache.getHitCount());
+
+        // results of the old database never survive a reload
+        assertEquals(cache.get(IpUtil.IP_MAX_INT).getCountry(), "C999");
+        Files.copy(createDatabase(createInputs(49, 2000)), path, StandardCopyOption.REPLACE_EXISTING);
+        assertTrue(agent.reload());
+        assertEquals(cache.get(IpUtil.IP_MAX_INT).getCountry(), "C1999");
+        for (int ip : hot) {
+            assertEquals(cache.get(ip).getCountry(), agent.get().locate(ip).getCountry());
+        }
+        agent.close();
+    }
+
+    @Test
+    public void cidrExportTest() throws IOException {
+        final List<String> blocks = new ArrayList<>();
+        final IpCidrExport.Visitor collector = new IpCidrExport.Visitor() {
+            @Override
+            public void visit(long start, int mark, long key) {
+                blocks.add(IpUtil.toString(start) + '/' + mark);
+            }
+        };
+        assertEquals(IpCidrExport.visitCidrs(IpUtil.parseLong("10.0.0.1"), IpUtil.parseLong("10.0.0.6"), 0L, collector), 4);
+        assertEquals(blocks, Arrays.asList("10.0.0.1/32", "10.0.0.2/31", "10.0.0.4/31", "10.0.0.6/32"));
+        blocks.clear();
+        IpCidrExport.visitCidrs(0L, IpUtil.IP_MAX, 0L, collector);
+        assertEquals(blocks, Arrays.asList("0.0.0.0/0"));
+
+        // the same location in neighbour segments
+        final List<TransferInput> inputs = new ArrayList<>();
+        inputs.add(new TransferInputImpl(0L, IpUtil.parseLong("1.255.255.255"), "A", null, null, null));
+        inputs.add(new TransferInputImpl(IpUtil.parseLong("2.0.0.0"), IpUtil.parseLong("3.255.255.255"), "B", null, null, null));
+        inputs.add(new TransferInputImpl(IpUtil.parseLong("4.0.0.0"), IpUtil.IP_MAX, "C", null, null, null));
+        final StringWriter csv = new StringWriter();
+        assertEquals(IpCidrExport.export(IpSeeker.create(createDatabase(inputs)), csv), 1 + 1 + 6);
+        assertTrue(csv.toString().startsWith("\"0.0.0.0/7\",\"A\",,,\r\n\"2.0.0.0/7\",\"B\",,,\r\n\"4.0.0.0/6\",\"C\""),
+                csv.toString());
+
+        // blocks are continuous, aligned, and in the right location
+        final IpSeeker seeker = IpSeeker.create(createDatabase(createInputs(50, 3000)));
+        final long[] next = new long[1];
+        final int count = IpCidrExport.export(seeker, new IpCidrExport.Visitor() {
+            @Override
+            public void visit(long start, int mark, long key) {
+                final long end = IpUtil.getSegmentEnd(start, mark);
+                assertEquals(start, next[0]);
+                assertEquals(IpUtil.getSegmentStart(start, mark), start);
+                assertEquals(seeker.locateKey(start), key);
+                assertEquals(seeker.locateKey(end), key);
+                next[0] = end + 1;
+            }
+        });
+        assertEquals(next[0], IpUtil.IP_MAX + 1);
+        assertTrue(count >= 3000);
+    }
+
+    @Test
+    public void mergeTest() throws IOException {
+        final List<TransferInput> inputs = createInputs(51, 2000);
+        final IpSeeker febit = IpSeeker.create(createDatabase(inputs));
+
+        // 17mon: units in the first half, and empty provinces in odd ranges
+        final int mon17Count = 500;
+        final long[] ends = new long[mon17Count];
+        final String[] texts = new String[mon17Count];
+        for (int i = 0; i < mon17Count; i++) {
+            ends[i] = i == mon17Count - 1 ? IpUtil.IP_MAX : (IpUtil.IP_MAX / mon17Count) * (i + 1);
+            texts[i] = "M" + i + '\t' + (i % 2 == 0 ? "MP" + i : "") + "\tMT" + i + '\t' + (i < mon17Count / 2 ? "U" + i : "");
+        }
+        final Mon17IpSeeker mon17 = Mon17IpSeeker.create(Mon17IpSeekerTest.createDatabase(ends, texts));
+
+        final File file = File.createTempFile("febit-ip-", ".dat");
+        file.deleteOnExit();
+        new IpMerge()
+                .add(febit)
+                .add(mon17)
+                .precedence(IpMerge.ISP, 1, 0)
+                .precedence(IpMerge.PROVINCE, 1, 0)
+                .precedence(IpMerge.CITY, 0)
+                .emit(file.getPath());
+        final IpSeeker merged = IpSeeker.create(file.toPath());
+        assertTrue(merged.isValid());
+
+        final Random random = new Random(51);
+        for (int i = 0; i < 20000; i++) {
+            final long ip = random.nextLong() & IpUtil.IP_MAX;
+            final IpSeeker.Location expectedFebit = febit.locate(ip);
+            final Mon17IpSeeker.Location expectedMon17 = mon17.locate(ip);
+            final IpSeeker.Location location = merged.locate(ip);
+
+            assertEquals(location.getCountry(), expectedFebit.getCountry());
+            assertEquals(location.getIsp(), expectedMon17.getUnit().isEmpty() ? expectedFebit.getIsp() : expectedMon17.getUnit());
+            assertEquals(location.getProvince(), expectedMon17.getProvince().isEmpty() ? expectedFebit.getProvince() : expectedMon17.getProvince());
+            assertEquals(location.getCity(), expectedFebit.getCity());
+        }
+    }
+
+    @Test
+    public void compactTest() throws IOException {
+        // locations repeat in real databases
+        final List<TransferInput> inputs = new ArrayList<>();
+        // dense ranges and repeated locations, as in real databases
+        final Random random = new Random(52);
+        for (long from = 0; from <= IpUtil.IP_MAX;) {
+            final long to = Math.min(IpUtil.IP_MAX, from + random.nextInt(0x40000));
+            final int loc = random.nextInt(50);
+            inputs.add(new TransferInputImpl(from, to, "C" + loc, "I" + (loc % 13), "P" + loc, "T" + loc));
+            from = to + 1;
+        }
+        final Path plainPath = createDatabase(inputs);
+        final IpSeeker plain = IpSeeker.create(plainPath);
+
+        final File file = File.createTempFile("febit-ip-", ".dat");
+        file.deleteOnExit();
+        Transfer transfer = new Transfer();
+        transfer.read(inputs.iterator());
+        transfer.emitCompact(file.getPath());
+
+        assertTrue(file.length() * 2 < Files.size(plainPath), file.length() + " vs " + Files.size(plainPath));
+
+        final IpSeeker heap = IpSeeker.create(file.toPath());
+        final IpSeeker mapped = IpSeeker.createMapped(file.toPath());
+        assertTrue(heap instanceof CompactIpSeeker);
+        assertTrue(heap.isValid());
+        assertTrue(mapped.isValid());
+
+        for (TransferInput input : inputs) {
+            assertLocation(heap.locate(input.getFrom()), input);
+            assertLocation(mapped.locate(input.getTo()), input);
+            assertEquals(heap.locateIpFrom((int) input.getTo()), plain.locateIpFrom((int) input.getTo()));
+            assertEquals(heap.locateIpTo((int) input.getFrom()), plain.locateIpTo((int) input.getFrom()));
+        }
+        final int[] ips = new int[5000];
+        for (int i = 0; i < ips.length; i++) {
+            ips[i] = random.nextInt();
+            assertEquals(heap.locateKey(ips[i]), plain.locateKey(ips[i]));
+            assertSame(heap.locateArea(ips[i]), heap.locateArea(ips[i]));
+        }
+        Arrays.sort(ips);
+        final long[] keys = new long[ips.length];
+        heap.locateAll(ips, keys);
+        for (int i = 0; i < ips.length; i++) {
+            assertEquals(keys[i], plain.locateKey(ips[i]));
+        }
+
+        // same ranges, and encoding is stable
+        assertEquals(IpDiff.diff(plain, heap, new StringWriter()), 0);
+        assertEquals(CompactTransfer.encode(heap), Files.readAllBytes(file.toPath()));
+
+        final java.util.Map<String, String> i18n = new java.util.HashMap<>();
+        i18n.put(inputs.get(1).getCountry(), "Country One");
+        assertEquals(heap.i18n(i18n).locate(inputs.get(1).getFrom()).getCountry(), "Country One");
+
+        // broken
+        final byte[] broken = Files.readAllBytes(file.toPath());
+        broken[broken.length - 3] = (byte) 0x80;
+        broken[broken.length - 2] = (byte) 0x80;
+        assertFalse(IpSeeker.create(broken).isValid());
+    }
+
+    @Test
+    public void blankTest() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * 5);
+        buffer.putInt(4);
+        buffer.putInt((int) IpUtil.parseLong("10.0.0.0"));
+        buffer.putInt((int) IpUtil.parseLong("10.255.255.255"));
+        buffer.putInt((int) IpUtil.parseLong("192.168.0.0"));
+        buffer.putInt((int) IpUtil.parseLong("192.168.255.255"));
+
+        IpBlankSeeker seeker = IpBlankSeeker.create(buffer.array());
+        assertFalse(seeker.isWhite("9.255.255.255"));
+        assertTrue(seeker.isWhite("10.0.0.1"));
+        assertTrue(seeker.isWhite("10.255.255.255"));
+        assertFalse(seeker.isWhite("11.0.0.0"));
+        assertTrue(seeker.isWhite("192.168.1.1"));
+        assertFalse(seeker.isWhite("255.255.255.255"));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void legacyConstructorTest() {
+        final int[][] segments = new int[256][];
+        final long[][] indexers = new long[256][];
+        for (int i = 0; i < 256; i++) {
+            segments[i] = new int[]{0x7FFFFF, 0xFFFFFF};
+            indexers[i] = new long[]{1L << 48, 2L << 48};
+        }
+        final IpSeeker seeker = new LegacyIpSeeker(new String[]{null, "A", "B"}, segments, indexers);
+        assertTrue(seeker.isValid());
+        assertEquals(seeker.locate("1.2.3.4").getCountry(), "A");
+        assertEquals(seeker.locate("1.128.0.0").getCountry(), "B");
+        assertEquals(seeker.locate("255.255.255.255").getCountry(), "B");
+
+        final IpBlankSeeker blank = new LegacyIpBlankSeeker(new long[]{
+            IpUtil.parseLong("10.0.0.0"), IpUtil.parseLong("10.255.255.255")});
+        assertTrue(blank.isWhite("10.1.1.1"));
+        assertFalse(blank.isWhite("11.0.0.0"));
+    }
+
+    @SuppressWarnings("deprecation")
+    static class LegacyIpSeeker extends IpSeeker {
+
+        LegacyIpSeeker(String[] dict, int[][] segments, long[][] segmentIndexer) {
+            super(dict, segments, segmentIndexer);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    static class LegacyIpBlankSeeker extends IpBlankSeeker {
+
+        LegacyIpBlankSeeker(long[] datas) {
+            super(datas);
+        }
+    }
+
+    @Test
+    public void transferCloseTest() throws IOException {
+        final List<TransferInput> inputs = new ArrayList<>(createInputs(46, 2000));
+        // out of order
+        inputs.add(new TransferInputImpl(0L, 1L, "A", null, null, null));
+        final SpoolTransfer transfer = new SpoolTransfer();
+        try {
+            transfer.read(inputs.iterator());
+            fail();
+        } catch (RuntimeException e) {
+            // expected
+        }
+        assertNotNull(transfer.spooled);
+        assertFalse(transfer.spooled.isOpen());
+
+        // abandoned
+        final SpoolTransfer abandoned = new SpoolTransfer();
+        try (Transfer closeable = abandoned) {
+            closeable.read(createInputs(46, 2000).iterator());
+            assertTrue(abandoned.spooled.isOpen());
+        }
+        assertFalse(abandoned.spooled.isOpen());
+    }
+
+    static class SpoolTransfer extends Transfer {
+
+        FileChannel spooled;
+
+        @Override
+        protected void flushSegment() {
+            super.flushSegment();
+            if (spool != null) {
+                spooled = spool;
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util;
+
+import java.util.Random;
+import org.febit.util.ip.IpBlankSeeker;
+import org.febit.util.ip.IpSet;
+import org.febit.util.ip.IpUtil;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author zqq90
+ */
+public class IpSetTest {
+
+    @Test
+    public void cidrTest() {
+        IpSet set = IpSet.ofCidrs("10.0.0.0/8", "192.168.0.0/16", "10.1.0.0/16", "11.0.0.0/8", "1.2.3.4");
+        assertEquals(set.size(), 3);
+        assertEquals(set.toString(), "1.2.3.4,10.0.0.0-11.255.255.255,192.168.0.0-192.168.255.255");
+        assertEquals(set.count(), 1L + (2L << 24) + (1L << 16));
+        assertTrue(set.contains("1.2.3.4"));
+        assertFalse(set.contains("1.2.3.5"));
+        assertTrue(set.contains("11.255.255.255"));
+        assertFalse(set.contains("12.0.0.0"));
+
+        assertEquals(IpSet.ofCidrs("0.0.0.0/0").count(), IpUtil.IP_MAX + 1);
+        try {
+            IpSet.ofCidrs("10.0.0.0/33");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void operationTest() {
+        IpSet a = IpSet.ofCidrs("10.0.0.0/8", "192.168.0.0/16");
+        IpSet b = IpSet.ofCidrs("10.1.0.0/16", "172.16.0.0/12");
+
+        assertEquals(a.union(b).toString(),
+                "10.0.0.0-10.255.255.255,172.16.0.0-172.31.255.255,192.168.0.0-192.168.255.255");
+        assertEquals(a.intersect(b).toString(), "10.1.0.0-10.1.255.255");
+        assertEquals(a.difference(b).toString(),
+                "10.0.0.0-10.0.255.255,10.2.0.0-10.255.255.255,192.168.0.0-192.168.255.255");
+        assertTrue(a.intersect(IpSet.EMPTY).isEmpty());
+        assertEquals(a.complement().complement().toString(), a.toString());
+        assertEquals(IpSet.EMPTY.complement().count(), IpSet.ALL.count());
+    }
+
+    @Test
+    public void blankSeekerTest() {
+        IpSet set = IpSet.ofCidrs("10.0.0.0/8", "192.168.0.0/16", "255.255.255.255");
+        IpBlankSeeker seeker = set.toBlankSeeker();
+        assertFalse(seeker.isWhite("9.255.255.255"));
+        assertTrue(seeker.isWhite("10.0.0.0"));
+        assertTrue(seeker.isWhite("10.255.255.255"));
+        assertFalse(seeker.isWhite("11.0.0.0"));
+        assertTrue(seeker.isWhite("192.168.1.1"));
+        assertTrue(seeker.isWhite("255.255.255.255"));
+
+        IpSet back = IpSet.of(seeker);
+        assertEquals(back.toString(), set.toString());
+
+        // 0.0.0.0 can't be white in that format
+        seeker = IpSet.ofCidrs("0.0.0.0", "1.0.0.0/8").toBlankSeeker();
+        assertFalse(seeker.isWhite("0.0.0.0"));
+        assertTrue(seeker.isWhite("1.0.0.0"));
+        assertFalse(seeker.isWhite("2.0.0.0"));
+        assertEquals(IpSet.of(seeker).toString(), "1.0.0.0-1.255.255.255");
+        assertFalse(IpSet.ofCidrs("0.0.0.0").toBlankSeeker().isWhite("0.0.0.1"));
+    }
+
+    @Test
+    public void prefixIndexTest() {
+        Random random = new Random(42);
+        IpSet.Builder builder = IpSet.builder();
+        for (int i = 0; i < 20000; i++) {
+            long from = random.nextLong() & IpUtil.IP_MAX;
+            builder.add(from, Math.min(IpUtil.IP_MAX, from + random.nextInt(1 << 18)));
+        }
+        // dense /16
+        for (int i = 0; i < 1000; i++) {
+            long from = IpUtil.parseLong("8.8.0.0") + i * 37;
+            builder.add(from, from + 5);
+        }
+        IpSet set = builder.build();
+        IpSet indexed = set.withPrefixIndex(16);
+        // no bitmap, searches in ranges of the /16
+        IpSet unmapped = set.withPrefixIndex(Integer.MAX_VALUE);
+        assertTrue(indexed.isPrefixIndexed());
+        for (int i = 0; i < 200000; i++) {
+            long ip = random.nextLong() & IpUtil.IP_MAX;
+            assertEquals(indexed.contains(ip), set.contains(ip));
+            assertEquals(unmapped.contains(ip), set.contains(ip));
+        }
+        for (long ip = IpUtil.parseLong("8.8.0.0"); ip <= IpUtil.parseLong("8.9.255.255"); ip++) {
+            assertEquals(indexed.contains(ip), set.contains(ip));
+            assertEquals(unmapped.contains(ip), set.contains(ip));
+        }
+        for (int i = 0; i < set.size(); i++) {
+            assertTrue(unmapped.contains(set.getStart(i)));
+            assertTrue(unmapped.contains(set.getEnd(i)));
+            assertEquals(unmapped.contains(set.getEnd(i) + 1), set.contains(set.getEnd(i) + 1));
+        }
+    }
+}
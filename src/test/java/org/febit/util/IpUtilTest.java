@@ -1,5 +1,8 @@
 package org.febit.util;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import org.febit.util.ip.IpUtil;
 import static org.testng.Assert.*;
 import org.testng.annotations.Test;
@@ -31,4 +34,120 @@ public class IpUtilTest {
         assertEquals(IpUtil.ipv4ToLong("..1.255"), 0x01FFL);
 
     }
+
+    @Test
+    public void parseIpv4Test() {
+        String line = "GET 192.168.1.20 - 10.0.0.1";
+        char[] chars = line.toCharArray();
+        byte[] bytes = line.getBytes();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        assertEquals(IpUtil.parseIpv4(line, 4, 16), 0xC0A80114L);
+        assertEquals(IpUtil.parseIpv4(chars, 4, 16), 0xC0A80114L);
+        assertEquals(IpUtil.parseIpv4(bytes, 4, 16), 0xC0A80114L);
+        assertEquals(IpUtil.parseIpv4(buffer, 19, 27), 0x0A000001L);
+        assertEquals(buffer.position(), 0);
+
+        assertEquals(IpUtil.parseIpv4("0.0.0.0"), 0L);
+        assertEquals(IpUtil.parseIpv4("255.255.255.255"), 0xFFFFFFFFL);
+        assertEquals(IpUtil.parseInt("1.2.3.4"), 0x01020304);
+        assertEquals(IpUtil.parseBytes("1.2.3.255"), new byte[]{1, 2, 3, (byte) 255});
+
+        //bad
+        assertEquals(IpUtil.parseIpv4(line, 0, 16), -1L);
+        assertEquals(IpUtil.parseIpv4((String) null), -1L);
+        assertEquals(IpUtil.parseIpv4("1.2.3"), -1L);
+        assertEquals(IpUtil.parseIpv4("1.2.3.4."), -1L);
+        assertEquals(IpUtil.parseIpv4("1.2.3.4.5"), -1L);
+        assertEquals(IpUtil.parseIpv4("1..2.3.4"), -1L);
+        assertEquals(IpUtil.parseIpv4("01.2.3.4"), -1L);
+        assertEquals(IpUtil.parseIpv4("1.2.3.256"), -1L);
+        assertEquals(IpUtil.parseIpv4("1.2.3.1000"), -1L);
+        assertEquals(IpUtil.parseIpv4("1.2.3.a"), -1L);
+
+        assertTrue(IpUtil.isIpv4("10.0.0.1"));
+        assertFalse(IpUtil.isIpv4("10.0.0.01"));
+        assertFalse(IpUtil.isIpv4("10.0.0"));
+
+        // lenient, same as before
+        assertEquals(IpUtil.parseInt("010.1.1.1"), 0x0A010101);
+        assertEquals(IpUtil.parseInt("1.2.3.256"), 0x01020300);
+        assertEquals(IpUtil.parseBytes("1.2.300.4"), new byte[]{1, 2, 44, 4});
+        try {
+            IpUtil.parseInt("1.2.3.a");
+            fail();
+        } catch (NumberFormatException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void formatIpv4Test() throws IOException {
+        assertEquals(IpUtil.toString(0), "0.0.0.0");
+        assertEquals(IpUtil.toString(0xFFFFFFFF), "255.255.255.255");
+        assertEquals(IpUtil.toString(0xC0A80114L), "192.168.1.20");
+
+        char[] buf = new char[20];
+        buf[0] = '[';
+        int end = IpUtil.writeTo(buf, 1, 0x0A00FF01);
+        assertEquals(new String(buf, 0, end), "[10.0.255.1");
+
+        CharArrayWriter writer = new CharArrayWriter();
+        IpUtil.appendTo(writer, 0x01020304);
+        assertEquals(writer.toString(), "1.2.3.4");
+
+        StringBuilder builder = new StringBuilder();
+        IpUtil.appendTo((Appendable) builder, 0x7F000001).append(',');
+        assertEquals(builder.toString(), "127.0.0.1,");
+
+        CharBuffer charBuffer = CharBuffer.allocate(20);
+        IpUtil.appendTo(charBuffer, 0x08080808);
+        charBuffer.flip();
+        assertEquals(charBuffer.toString(), "8.8.8.8");
+    }
+
+    static void assertIpv6(String ip, long high, long low) {
+        long[] out = new long[2];
+        assertTrue(IpUtil.parseIpv6(ip, out), ip);
+        assertEquals(out[0], high, ip);
+        assertEquals(out[1], low, ip);
+    }
+
+    @Test
+    public void ipv6Test() {
+        assertIpv6("::", 0L, 0L);
+        assertIpv6("::1", 0L, 1L);
+        assertIpv6("1::", 0x0001000000000000L, 0L);
+        assertIpv6("2001:db8::ff00:42:8329", 0x20010db800000000L, 0x0000ff0000428329L);
+        assertIpv6("2001:0db8:0000:0000:0000:ff00:0042:8329", 0x20010db800000000L, 0x0000ff0000428329L);
+        assertIpv6("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff", -1L, -1L);
+        assertIpv6("::ffff:1.2.3.4", 0L, 0x0000ffff01020304L);
+        assertIpv6("1:2:3:4:5:6:7::", 0x0001000200030004L, 0x0005000600070000L);
+
+        //bad
+        long[] out = new long[2];
+        assertFalse(IpUtil.parseIpv6(null, out));
+        assertFalse(IpUtil.parseIpv6("", out));
+        assertFalse(IpUtil.parseIpv6(":", out));
+        assertFalse(IpUtil.parseIpv6(":1", out));
+        assertFalse(IpUtil.parseIpv6("1:", out));
+        assertFalse(IpUtil.parseIpv6("1::2::3", out));
+        assertFalse(IpUtil.parseIpv6("1:2:3:4:5:6:7", out));
+        assertFalse(IpUtil.parseIpv6("1:2:3:4:5:6:7:8:9", out));
+        assertFalse(IpUtil.parseIpv6("12345::", out));
+        assertFalse(IpUtil.parseIpv6("::ffff:1.2.3.256", out));
+        assertFalse(IpUtil.parseIpv6("g::", out));
+
+        assertEquals(IpUtil.toString(0L, 0L), "::");
+        assertEquals(IpUtil.toString(0L, 1L), "::1");
+        assertEquals(IpUtil.toString(0x0001000000000000L, 0L), "1::");
+        assertEquals(IpUtil.toString(0x20010db800000000L, 0x0000ff0000428329L), "2001:db8::ff00:42:8329");
+        assertEquals(IpUtil.toString(0x20010db800010001L, 0x0001000100010001L), "2001:db8:1:1:1:1:1:1");
+
+        assertEquals(IpUtil.getIpv6MaskHigh(32), 0xFFFFFFFF00000000L);
+        assertEquals(IpUtil.getIpv6MaskLow(32), 0L);
+        assertEquals(IpUtil.getIpv6MaskHigh(96), -1L);
+        assertEquals(IpUtil.getIpv6MaskLow(96), 0xFFFFFFFF00000000L);
+        assertEquals(IpUtil.getIpv6MaskLow(128), -1L);
+    }
 }
@@ -0,0 +1,84 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import org.febit.util.ip.IpSeeker;
+import org.febit.util.ip.IpUtil;
+import org.febit.util.ip.Ipv6Seeker;
+import org.febit.util.ip.transfer.Ipv6Transfer;
+import org.febit.util.ip.transfer.Ipv6TransferInput;
+import org.febit.util.ip.transfer.Ipv6TransferInputImpl;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author zqq90
+ */
+public class Ipv6SeekerTest {
+
+    static Ipv6TransferInput network(String network, String country) {
+        int split = network.indexOf('/');
+        long[] head = new long[2];
+        assertTrue(IpUtil.parseIpv6(network.substring(0, split), head));
+        int mark = Integer.parseInt(network.substring(split + 1));
+        long maskHigh = IpUtil.getIpv6MaskHigh(mark);
+        long maskLow = IpUtil.getIpv6MaskLow(mark);
+        return new Ipv6TransferInputImpl(head[0] & maskHigh, head[1] & maskLow,
+                head[0] | ~maskHigh, head[1] | ~maskLow, country, null, "P" + country, null);
+    }
+
+    @Test
+    public void locateTest() throws IOException {
+        List<Ipv6TransferInput> inputs = new ArrayList<>();
+        inputs.add(network("::ffff:1.0.0.0/120", "AU"));
+        inputs.add(network("2001:200::/32", "JP"));
+        inputs.add(network("2001:201::/32", "JP"));
+        inputs.add(network("2001:250::/35", "CN"));
+        inputs.add(network("2001:250:2000::/35", "HK"));
+        inputs.add(network("2400:cb00::/32", "US"));
+        for (int i = 0; i < 5000; i++) {
+            inputs.add(new Ipv6TransferInputImpl(0x2a00000000000000L + i, 0L, 0x2a00000000000000L + i, -1L, "C" + (i % 50), null, null, null));
+        }
+
+        File file = File.createTempFile("febit-ipv6-", ".dat");
+        file.deleteOnExit();
+        Ipv6Transfer transfer = new Ipv6Transfer();
+        transfer.read(inputs.iterator());
+        transfer.emit(file.getPath());
+
+        Ipv6Seeker seeker = Ipv6Seeker.create(file.toPath());
+
+        assertEquals(seeker.locateArea("::ffff:1.0.0.1").getCountry(), "AU");
+        assertEquals(seeker.locateArea(InetAddress.getByName("1.0.0.255")).getCountry(), "AU");
+        assertNull(seeker.locateArea("::ffff:1.0.1.0").getCountry());
+        assertNull(seeker.locateArea("::").getCountry());
+        assertEquals(seeker.locateArea("2001:200::1").getCountry(), "JP");
+        assertEquals(seeker.locateArea("2001:201:ffff::1").getCountry(), "JP");
+        assertNull(seeker.locateArea("2001:202::").getCountry());
+        assertEquals(seeker.locateArea("2001:250:1fff:ffff:ffff:ffff:ffff:ffff").getCountry(), "CN");
+        assertEquals(seeker.locateArea("2001:250:2000::").getProvince(), "PHK");
+        assertEquals(seeker.locateArea(InetAddress.getByName("2400:cb00::abcd")).getCountry(), "US");
+        assertNull(seeker.locateArea("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff").getCountry());
+        assertNull(seeker.locateArea("not a ip"));
+
+        for (int i = 0; i < 5000; i++) {
+            IpSeeker.Area area = seeker.locateArea(0x2a00000000000000L + i, i * 31L);
+            assertEquals(area.getCountry(), "C" + (i % 50));
+            if (i + 50 < 5000) {
+                assertSame(seeker.locateArea(0x2a00000000000000L + i + 50, -1L), area);
+            }
+        }
+
+        // JP ranges are combined
+        long[] out = new long[2];
+        seeker.locateIpFrom(0x2001020100000000L, 0L, out);
+        assertEquals(IpUtil.toString(out[0], out[1]), "2001:200::");
+        seeker.locateIpTo(0x2001020000000000L, 0L, out);
+        assertEquals(IpUtil.toString(out[0], out[1]), "2001:201:ffff:ffff:ffff:ffff:ffff:ffff");
+    }
+}
@@ -0,0 +1,162 @@
+// Copyright (c) 2013-present, febit.org. All Rights Reserved.
+package org.febit.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.febit.util.ip.IpCache;
+import org.febit.util.ip.IpUtil;
+import org.febit.util.ip.Mon17IpSeeker;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author zqq90
+ */
+public class Mon17IpSeekerTest {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Create a database in 17mon format.
+     *
+     * @param ends ends of ranges, ascending, and the last must be 255.255.255.255
+     * @param texts
+     * @return
+     */
+    static byte[] createDatabase(long[] ends, String[] texts) {
+        final int count = ends.length;
+        final int recordStart = 1024 + 4;
+        final int textStart = recordStart + (count << 3);
+
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        ByteBuffer buf = ByteBuffer.allocate(textStart + 1024 * 1024);
+
+        buf.order(ByteOrder.BIG_ENDIAN).putInt(textStart + 1024);
+
+        // fast index
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        int record = 0;
+        for (int i = 0; i < 256; i++) {
+            while (ends[record] < ((long) i << 24)) {
+                record++;
+            }
+            buf.putInt(record);
+        }
+
+        Map<String, Integer> textOffsets = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = texts[i].getBytes(UTF_8);
+            Integer offsetRef = textOffsets.get(texts[i]);
+            int offset;
+            if (offsetRef != null) {
+                offset = offsetRef;
+            } else {
+                offset = text.size();
+                text.write(bytes, 0, bytes.length);
+                textOffsets.put(texts[i], offset);
+            }
+            buf.order(ByteOrder.BIG_ENDIAN).putInt((int) ends[i]);
+            buf.put((byte) offset).put((byte) (offset >>> 8)).put((byte) (offset >>> 16));
+            buf.put((byte) bytes.length);
+        }
+        buf.put(text.toByteArray());
+        byte[] result = new byte[buf.position()];
+        System.arraycopy(buf.array(), 0, result, 0, result.length);
+        return result;
+    }
+
+    static String text(int i) {
+        return "C" + i + "\tP" + i + "\tT" + i + "\tU" + i;
+    }
+
+    @Test
+    public void locateTest() throws IOException {
+        final Random random = new Random(17);
+        final int count = 5000;
+        long[] ends = new long[count];
+        String[] texts = new String[count];
+
+        // dense /8 segments first, then sparse
+        long ip = -1;
+        for (int i = 0; i < count - 1; i++) {
+            ip += 1 + random.nextInt(i < 3000 ? 0x100 : 0x100000);
+            ends[i] = ip;
+            texts[i] = text(i);
+        }
+        ends[count - 1] = IpUtil.IP_MAX;
+        texts[count - 1] = text(count - 1);
+
+        final byte[] database = createDatabase(ends, texts);
+        File file = File.createTempFile("febit-17mon-", ".dat");
+        file.deleteOnExit();
+        Files.write(file.toPath(), database);
+
+        assertLocate(Mon17IpSeeker.create(database), ends, random);
+        assertLocate(Mon17IpSeeker.createMapped(file.toPath()), ends, random);
+    }
+
+    @Test
+    public void sharedLocationTest() {
+        long[] ends = new long[]{0xFFFFL, 0x1FFFFL, 0x2FFFFL, 0x1FFFFFFL, IpUtil.IP_MAX};
+        String[] texts = new String[]{"中国\t北京\t北京\t", "X", "中国\t北京\t北京\t", "A\tB\tC\tD\tE", "A\tB"};
+        Mon17IpSeeker seeker = Mon17IpSeeker.create(createDatabase(ends, texts));
+
+        Mon17IpSeeker.Location location = seeker.locate(0x100L);
+        assertSame(seeker.locate(0x200L), location);
+        assertSame(seeker.locate(0x20000L), location);
+        assertEquals(location.getCountry(), "中国");
+        assertEquals(location.getCity(), "北京");
+        assertEquals(location.getUnit(), "");
+
+        assertEquals(seeker.locate(0x10000L).getCountry(), "X");
+        assertEquals(seeker.locate(0x10000L).getProvince(), "");
+        assertEquals(seeker.locate(0x1000000L).getUnit(), "D\tE");
+        assertEquals(seeker.locate(IpUtil.IP_MAX).getProvince(), "B");
+        assertEquals(seeker.locate(IpUtil.IP_MAX).getCity(), "");
+    }
+
+    @Test
+    public void cacheTest() {
+        long[] ends = new long[]{0xFFFFL, 0x1FFFFL, IpUtil.IP_MAX};
+        String[] texts = new String[]{"A", "B", "C"};
+        Mon17IpSeeker seeker = Mon17IpSeeker.create(createDatabase(ends, texts));
+
+        IpCache<Mon17IpSeeker, Mon17IpSeeker.Location> cache = IpCache.createMon17(seeker, 16);
+        for (int i = 0; i < 100; i++) {
+            assertSame(cache.get(0x100 + (i & 7)), seeker.locate(0x100 + (i & 7)));
+        }
+        assertEquals(cache.get("0.1.0.1").getCountry(), "B");
+        assertEquals(cache.getMissCount(), 9);
+        assertEquals(cache.getHitCount(), 92);
+    }
+
+    static void assertLocate(Mon17IpSeeker seeker, long[] ends, Random random) {
+        final int count = ends.length;
+        assertEquals(seeker.locate(0L).getCountry(), "C0");
+        assertEquals(seeker.locate(IpUtil.IP_MAX).getCountry(), "C" + (count - 1));
+        assertEquals(seeker.locate(ends[42]).getCity(), "T42");
+        assertEquals(seeker.locate(ends[42] + 1).getCity(), "T43");
+        assertEquals(seeker.locate((int) ends[2999]).getUnit(), "U2999");
+
+        int index = 0;
+        for (int i = 0; i < 100000; i++) {
+            long target = random.nextLong() & IpUtil.IP_MAX;
+            while (ends[index] < target) {
+                index++;
+            }
+            while (index > 0 && ends[index - 1] >= target) {
+                index--;
+            }
+            assertEquals(seeker.locate(target).getProvince(), "P" + index);
+        }
+    }
+}